@@ -1,5 +1,6 @@
 module bsaf {
     requires java.logging;
+    requires java.management;
 
     requires transitive java.datatransfer;
     requires transitive java.desktop;
@@ -8,7 +9,11 @@ module bsaf {
     exports org.jdesktop.application.session;
     exports org.jdesktop.application.utils;
 
+    // ResourceConverters can be installed as service providers, see ResourceConverter
+    uses org.jdesktop.application.ResourceConverter;
+
     // must be opened if resources are loaded from classloader as in ResourceManager
+    opens org.jdesktop.application.resources;
     opens org.jdesktop.application.resources.icons;
 
 }
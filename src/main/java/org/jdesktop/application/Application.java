@@ -16,6 +16,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.PaintEvent;
 import java.beans.Beans;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.EventListener;
 import java.util.EventObject;
 import java.util.List;
@@ -109,6 +110,8 @@ import org.jdesktop.application.utils.PlatformType;
  * Application.homepage = A URL like http://www.javadesktop.org
  * Application.description =  One brief sentence
  * Application.lookAndFeel = either system, default, or a LookAndFeel class name
+ * Application.preload = Optional, class names separated by commas or spaces
+ * Application.startupCache = Optional, true to cache the resources between runs
  * </pre>
  * <p>
  * The {@code Application.lookAndFeel} resource is used to initialize the
@@ -119,6 +122,16 @@ import org.jdesktop.application.utils.PlatformType;
  * <li>{@code nimbus} - use the modern cross platform look and feel Nimbus
  * <li>a LookAndFeel class name - use the specified class
  * </ul>
+ * <p>
+ * The resources of the classes named by the {@code Application.preload}
+ * resource, typically the application's views and tasks, are loaded
+ * on background threads while {@code startup} runs.  See
+ * {@link ResourceManager#preload ResourceManager.preload}.
+ * If the {@code Application.startupCache} resource is true, the
+ * resources loaded during one run are saved in {@code LocalStorage}
+ * when the application exits, and read from there during the next
+ * run.  See {@link ResourceManager#setStartupCacheEnabled
+ * ResourceManager.setStartupCacheEnabled}.
  * 
  * @see SingleFrameApplication
  * @see ApplicationContext
@@ -131,6 +144,8 @@ public abstract class Application extends AbstractBean {
     public static final String KEY_APPLICATION_TITLE = "Application.title";
     public static final String KEY_APPLICATION_ICON = "Application.icon";
     public static final String KEY_APPLICATION_VENDOR_ID = "Application.vendorId";
+    public static final String KEY_APPLICATION_PRELOAD = "Application.preload";
+    public static final String KEY_APPLICATION_STARTUP_CACHE = "Application.startupCache";
 
 
     private static final Logger logger = Logger.getLogger(Application.class.getName());
@@ -287,6 +302,32 @@ public abstract class Application extends AbstractBean {
                 String s = "Couldn't set LookandFeel " + key + " = \"" + lnfResource + "\"";
                 logger.log(Level.WARNING, s, e);
             }
+
+            /* Use the resources saved by the previous run, if the
+             * Application.startupCache resource is true.
+             */
+            if (Boolean.TRUE.equals(appResourceMap.getBoolean(KEY_APPLICATION_STARTUP_CACHE))) {
+                ctx.getResourceManager().setStartupCacheEnabled(true);
+            }
+
+            /* Start loading the resources of the classes named by the
+             * Application.preload resource, while startup() runs.
+             */
+            String preloadResource = appResourceMap.getString(KEY_APPLICATION_PRELOAD);
+            if (preloadResource != null) {
+                List<Class<?>> preloadClasses = new ArrayList<Class<?>>();
+                for (String className : preloadResource.trim().split("[,\\s]+")) {
+                    if (className.isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        preloadClasses.add(Class.forName(className, false, applicationClass.getClassLoader()));
+                    } catch (ClassNotFoundException e) {
+                        logger.warning("Couldn't find class " + className + " named by " + KEY_APPLICATION_PRELOAD);
+                    }
+                }
+                ctx.getResourceManager().preload(preloadClasses);
+            }
         }
 
         return application;
@@ -524,6 +565,7 @@ public abstract class Application extends AbstractBean {
                 } catch (Exception e) {
                     logger.log(Level.WARNING, "unexpected error in Application.shutdown()", e);
                 } finally {
+                    saveStartupCache();
                     end();
                 }
             }
@@ -538,6 +580,17 @@ public abstract class Application extends AbstractBean {
         }
     }
 
+    private void saveStartupCache() {
+        ResourceManager resourceManager = getContext().getResourceManager();
+        if (resourceManager.isStartupCacheEnabled()) {
+            try {
+                resourceManager.saveStartupCache();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "couldn't save the ResourceMap startup cache", e);
+            }
+        }
+    }
+
     /**
      * Called by {@link #exit exit} to terminate the application.  Calls
      * {@code Runtime.getRuntime().exit(0)}, which halts the JVM.
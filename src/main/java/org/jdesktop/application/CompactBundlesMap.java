@@ -0,0 +1,263 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An internal helper class: the flattened resources of a ResourceMap's
+ * bundles, stored compactly.  Keys and values are kept in two parallel
+ * open-addressed arrays, rather than in one node per entry.  Keys are
+ * interned, so the keys shared by the bundles of different locales, and
+ * of the same bundle loaded by different ResourceMaps, are stored once.
+ * String values are stored as UTF-8 bytes until they're first requested.
+ * <p>
+ * The loaded resources never change.  Resources defined later, with
+ * {@code ResourceMap.putResource}, are kept in a small map that shadows
+ * the loaded ones.  Like a ConcurrentHashMap, this map can be read
+ * and written by any number of threads; null keys and values aren't
+ * allowed and entries can't be removed.
+ */
+final class CompactBundlesMap extends AbstractMap<String, Object> {
+
+    private final String[] keys;      // null for an empty slot, keys.length is a power of 2
+    private final Object[] values;
+    private final long[] encoded;     // bit i is set if values[i] was a String, stored as UTF-8
+    private final int size;
+    private volatile Map<String, Object> puts = null;  // see put()
+    private Set<String> keySet = null;
+    private Set<Map.Entry<String, Object>> entrySet = null;
+
+    private CompactBundlesMap(Map<String, Object> entries) {
+        int capacity = 2;
+        while (capacity * 3 < entries.size() * 4) {
+            capacity *= 2;
+        }
+        keys = new String[capacity];
+        values = new Object[capacity];
+        encoded = new long[(capacity + 63) / 64];
+        size = entries.size();
+        for (Map.Entry<String, Object> entry : entries.entrySet()) {
+            String key = entry.getKey().intern();
+            Object value = entry.getValue();
+            int i = firstSlot(key);
+            while (keys[i] != null) {
+                i = (i + 1) & (capacity - 1);
+            }
+            keys[i] = key;
+            if (value instanceof String) {
+                values[i] = ((String) value).getBytes(StandardCharsets.UTF_8);
+                encoded[i >>> 6] |= 1L << i;
+            } else {
+                values[i] = value;
+            }
+        }
+    }
+
+    /**
+     * Returns a compact copy of entries.
+     */
+    static CompactBundlesMap of(Map<String, Object> entries) {
+        return new CompactBundlesMap(entries);
+    }
+
+    private int firstSlot(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (keys.length - 1);
+    }
+
+    /* Returns the slot that contains key, or -1.
+     */
+    private int slot(Object key) {
+        int i = firstSlot(key);
+        String slotKey;
+        while ((slotKey = keys[i]) != null) {
+            if (slotKey.equals(key)) {
+                return i;
+            }
+            i = (i + 1) & (keys.length - 1);
+        }
+        return -1;
+    }
+
+    /* Returns the value in slot i, decoding it if it's still UTF-8.
+     * Concurrent decoding of the same value is harmless.
+     */
+    private Object slotValue(int i) {
+        Object value = values[i];
+        if ((value instanceof byte[]) && ((encoded[i >>> 6] & (1L << i)) != 0)) {
+            value = new String((byte[]) value, StandardCharsets.UTF_8);
+            values[i] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        Map<String, Object> puts = this.puts;
+        if (puts != null) {
+            Object value = puts.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        int i = slot(key);
+        return (i == -1) ? null : slotValue(i);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        Map<String, Object> puts = this.puts;
+        return ((puts != null) && puts.containsKey(key)) || (slot(key) != -1);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if ((key == null) || (value == null)) {
+            throw new NullPointerException();
+        }
+        Map<String, Object> puts = this.puts;
+        if (puts == null) {
+            synchronized (this) {
+                puts = this.puts;
+                if (puts == null) {
+                    puts = new ConcurrentHashMap<String, Object>();
+                    this.puts = puts;
+                }
+            }
+        }
+        Object oldValue = puts.put(key, value);
+        if (oldValue == null) {
+            int i = slot(key);
+            oldValue = (i == -1) ? null : slotValue(i);
+        }
+        return oldValue;
+    }
+
+    @Override
+    public int size() {
+        int n = size;
+        Map<String, Object> puts = this.puts;
+        if (puts != null) {
+            for (String key : puts.keySet()) {
+                if (slot(key) == -1) {
+                    n += 1;
+                }
+            }
+        }
+        return n;
+    }
+
+    /* Iterating over the keys doesn't decode any values.
+     */
+    @Override
+    public Set<String> keySet() {
+        if (keySet == null) {
+            keySet = new AbstractSet<String>() {
+                @Override
+                public Iterator<String> iterator() {
+                    return new KeyIterator();
+                }
+
+                @Override
+                public boolean contains(Object key) {
+                    return containsKey(key);
+                }
+
+                @Override
+                public int size() {
+                    return CompactBundlesMap.this.size();
+                }
+            };
+        }
+        return keySet;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    final Iterator<String> keys = new KeyIterator();
+                    return new Iterator<Map.Entry<String, Object>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return keys.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next() {
+                            String key = keys.next();
+                            return new AbstractMap.SimpleImmutableEntry<String, Object>(key, get(key));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return CompactBundlesMap.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /* Iterates over the loaded keys, then over the keys that were put()
+     * and weren't loaded.
+     */
+    private final class KeyIterator implements Iterator<String> {
+
+        private int slot = 0;
+        private final Iterator<String> putKeys;
+        private String nextKey = null;
+
+        KeyIterator() {
+            Map<String, Object> puts = CompactBundlesMap.this.puts;
+            putKeys = (puts == null) ? null : puts.keySet().iterator();
+            advance();
+        }
+
+        private void advance() {
+            nextKey = null;
+            while ((nextKey == null) && (slot < keys.length)) {
+                nextKey = keys[slot++];
+            }
+            while ((nextKey == null) && (putKeys != null) && putKeys.hasNext()) {
+                String key = putKeys.next();
+                if (slot(key) == -1) {
+                    nextKey = key;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextKey != null;
+        }
+
+        @Override
+        public String next() {
+            if (nextKey == null) {
+                throw new NoSuchElementException();
+            }
+            String key = nextKey;
+            advance();
+            return key;
+        }
+    }
+}
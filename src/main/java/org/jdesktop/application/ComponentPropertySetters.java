@@ -0,0 +1,190 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import java.awt.Component;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.swing.AbstractButton;
+import javax.swing.JLabel;
+
+/**
+ * An internal helper class that caches the property setters used by
+ * {@link ResourceMap#injectComponent} for each component class.  The
+ * bean properties of a class are introspected once, the first time a
+ * component of that class is injected, and the result is kept in a
+ * {@link ClassValue} so that it doesn't prevent the class from being
+ * unloaded.  It's used like this:
+ * <pre>
+ * ComponentPropertySetters setters = ComponentPropertySetters.forClass(myButton.getClass());
+ * ComponentPropertySetters.Setter setter = setters.getSetter("text");
+ * setter.set(myButton, "Save &As");
+ * </pre>
+ * The "text" property of AbstractButtons and JLabels is set with
+ * {@link MnemonicText#configure}, which also initializes the
+ * mnemonic properties.
+ */
+final class ComponentPropertySetters {
+
+    private static final ClassValue<ComponentPropertySetters> setters = new ClassValue<ComponentPropertySetters>() {
+        @Override
+        protected ComponentPropertySetters computeValue(Class<?> type) {
+            return new ComponentPropertySetters(type);
+        }
+    };
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Map<String, Setter> settersMap;
+    private final IntrospectionException introspectionException;
+
+    private ComponentPropertySetters(Class<?> componentClass) {
+        Map<String, Setter> map = null;
+        IntrospectionException exception = null;
+        try {
+            PropertyDescriptor[] pds = Introspector.getBeanInfo(componentClass).getPropertyDescriptors();
+            map = new HashMap<String, Setter>();
+            if (pds != null) {
+                for (PropertyDescriptor pd : pds) {
+                    map.put(pd.getName(), new Setter(componentClass, pd));
+                }
+            }
+        } catch (IntrospectionException e) {
+            exception = e;
+        }
+        this.settersMap = (map == null) ? null : Collections.unmodifiableMap(map);
+        this.introspectionException = exception;
+    }
+
+    /**
+     * Returns the (cached) property setters for the specified component class.
+     * @param componentClass the class of the component to be injected
+     * @return the property setters for componentClass
+     */
+    static ComponentPropertySetters forClass(Class<?> componentClass) {
+        return setters.get(componentClass);
+    }
+
+    /**
+     * Returns the exception thrown when componentClass was introspected,
+     * or null if introspection succeeded.
+     */
+    IntrospectionException getIntrospectionException() {
+        return introspectionException;
+    }
+
+    /**
+     * Returns true if introspection failed or found no properties.
+     */
+    boolean isEmpty() {
+        return (settersMap == null) || settersMap.isEmpty();
+    }
+
+    /**
+     * Returns the Setter for the named property or null if the component
+     * class doesn't have a property with that name.
+     */
+    Setter getSetter(String propertyName) {
+        return (settersMap == null) ? null : settersMap.get(propertyName);
+    }
+
+    /**
+     * Sets one component property.  The property's {@link PropertyDescriptor}
+     * is reduced to its name, its type, and a method handle for its write
+     * method.  Whether the handle or the Method itself is used, exceptions
+     * thrown by the write method are wrapped in an InvocationTargetException,
+     * as Method.invoke does, and Errors are rethrown.
+     */
+    static final class Setter {
+
+        private final String propertyName;
+        private final Class<?> propertyType;
+        private final Method writeMethod;
+        private final MethodHandle writeHandle;
+        private final Class<?> writeHandleType;  // the boxed parameter type
+        private final boolean primitiveParameter;
+        private final boolean mnemonicText;
+
+        private Setter(Class<?> componentClass, PropertyDescriptor pd) {
+            propertyName = pd.getName();
+            propertyType = pd.getPropertyType();
+            writeMethod = pd.getWriteMethod();
+            writeHandle = writeHandle(writeMethod);
+            Class<?> parameterType = (writeMethod == null) ? null : writeMethod.getParameterTypes()[0];
+            writeHandleType = (parameterType == null) ? null : MethodType.methodType(parameterType).wrap().returnType();
+            primitiveParameter = (parameterType != null) && parameterType.isPrimitive();
+            mnemonicText = "text".equals(propertyName)
+                    && (AbstractButton.class.isAssignableFrom(componentClass) || JLabel.class.isAssignableFrom(componentClass));
+        }
+
+        /* Returns a handle of type (Object, Object)void for the write method
+         * or null if the method isn't publicly accessible, in which case
+         * we'll fall back to Method.invoke.
+         */
+        private static MethodHandle writeHandle(Method method) {
+            if (method == null) {
+                return null;
+            }
+            try {
+                return MethodHandles.publicLookup().unreflect(method).asType(SETTER_TYPE);
+            } catch (IllegalAccessException ignore) {
+                return null;
+            }
+        }
+
+        String getPropertyName() {
+            return propertyName;
+        }
+
+        /**
+         * Returns the property type or null, e.g. for indexed properties
+         * that don't support non-indexed access.
+         */
+        Class<?> getPropertyType() {
+            return propertyType;
+        }
+
+        boolean isWritable() {
+            return writeMethod != null;
+        }
+
+        void set(Component component, Object value) throws Exception {
+            if (mnemonicText) {
+                MnemonicText.configure(component, (String) value);
+            } else if (writeHandle != null) {
+                /* Reject the arguments Method.invoke would reject, rather
+                 * than letting the handle's conversions throw from inside
+                 * the call, where they'd look like the write method's own.
+                 */
+                if ((value == null) ? primitiveParameter : !writeHandleType.isInstance(value)) {
+                    throw new IllegalArgumentException("argument type mismatch");
+                }
+                try {
+                    writeHandle.invokeExact((Object) component, value);
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new InvocationTargetException(e);
+                }
+            } else {
+                try {
+                    writeMethod.invoke(component, value);
+                } catch (InvocationTargetException e) {
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+        }
+    }
+}
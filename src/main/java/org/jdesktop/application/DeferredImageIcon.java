@@ -0,0 +1,84 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.net.URL;
+import javax.swing.ImageIcon;
+
+/**
+ * An internal helper class: an ImageIcon whose image isn't decoded until
+ * it's painted, or until the image itself is needed.  The icon's size
+ * is read from the image file's header when the icon is created, so
+ * that layouts don't force the image to be decoded.  Images are loaded
+ * with the {@link ResourceImageCache}, see
+ * {@link ResourceImageCache#setDeferredLoading}.
+ */
+final class DeferredImageIcon extends ImageIcon {
+
+    private final transient ResourceImageCache cache;
+    private final transient URL url;
+    private final int width;
+    private final int height;
+    private volatile boolean loaded = false;
+
+    DeferredImageIcon(ResourceImageCache cache, URL url, int width, int height) {
+        this.cache = cache;
+        this.url = url;
+        this.width = width;
+        this.height = height;
+        setDescription(url.toExternalForm());
+    }
+
+    /**
+     * Returns true if the image has been decoded.
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Decodes the image, if that hasn't been done already.
+     */
+    void load() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    setImage(cache.getSingleResolutionImage(url));
+                    loaded = true;
+                }
+            }
+        }
+    }
+
+    @Override
+    public Image getImage() {
+        load();
+        return super.getImage();
+    }
+
+    @Override
+    public int getImageLoadStatus() {
+        load();
+        return super.getImageLoadStatus();
+    }
+
+    @Override
+    public synchronized void paintIcon(Component c, Graphics g, int x, int y) {
+        load();
+        super.paintIcon(c, g, x, y);
+    }
+
+    @Override
+    public int getIconWidth() {
+        return loaded ? super.getIconWidth() : width;
+    }
+
+    @Override
+    public int getIconHeight() {
+        return loaded ? super.getIconHeight() : height;
+    }
+}
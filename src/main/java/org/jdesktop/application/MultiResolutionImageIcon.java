@@ -0,0 +1,46 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import java.awt.Image;
+import java.awt.MediaTracker;
+import javax.swing.ImageIcon;
+
+/**
+ * An internal helper class: an ImageIcon for a
+ * {@link ResourceMultiResolutionImage}.  ImageIcon waits for its image
+ * with a MediaTracker, which would decode the base image as soon as the
+ * icon is created.  This icon doesn't track its image, its size is the
+ * image's size, read from the base image's header, and it paints the
+ * multi-resolution image itself, so that only the variant that matches
+ * the scale it's painted at is decoded.  See
+ * {@link ResourceImageCache#setMultiResolution}.
+ */
+final class MultiResolutionImageIcon extends ImageIcon {
+
+    MultiResolutionImageIcon(ResourceMultiResolutionImage image, String description) {
+        setImage(image);
+        setDescription(description);
+    }
+
+    @Override
+    protected void loadImage(Image image) {
+        // the variants are loaded by the ResourceImageCache when they're drawn
+    }
+
+    @Override
+    public int getImageLoadStatus() {
+        return MediaTracker.COMPLETE;
+    }
+
+    @Override
+    public int getIconWidth() {
+        return getImage().getWidth(null);
+    }
+
+    @Override
+    public int getIconHeight() {
+        return getImage().getHeight(null);
+    }
+}
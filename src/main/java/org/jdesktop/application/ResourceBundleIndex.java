@@ -0,0 +1,456 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PropertyResourceBundle;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A precompiled index of the <code>.properties</code> ResourceBundles
+ * in one resources directory.  The index is a single binary file,
+ * {@value #INDEX_FILE_NAME}, created at build time by running this
+ * class's {@code main} method on a classes directory:
+ * <pre>
+ * java -cp bsaf.jar org.jdesktop.application.ResourceBundleIndex target/classes
+ * </pre>
+ * For each bundle file, like {@code MyApp_fr.properties} or
+ * {@code MyApp_win.properties}, the index holds the parsed keys and
+ * values; every distinct string is stored once.  {@link ResourceMap}
+ * reads the index with one stream read and resolves platform and
+ * locale variants with the same candidate list {@link ResourceBundle}
+ * uses.  Bundles that are defined by classes, and directories without
+ * an index, are loaded with {@code ResourceBundle.getBundle} as usual.
+ * If the class path has several copies of a resources directory, like
+ * a language pack jar that adds {@code MyApp_fr.properties} to an
+ * application's package, their indexes are merged.  A candidate bundle
+ * that isn't in any index, and that exists in a copy of the directory
+ * that wasn't indexed, is found with a resource lookup, once per class
+ * loader; then the bundle family is loaded with ResourceBundle.getBundle.
+ * <p>
+ * The index must be rebuilt whenever the bundles change.  The
+ * {@code bundle-index} profile of this project's build does that for
+ * the framework's own resources.
+ * <p>
+ * Most of the bundle names ResourceMaps probe, one per class and one
+ * per platform suffix, don't exist.  An index records that with at
+ * most one resource lookup per name.  For directories that aren't indexed, the bundles that
+ * ResourceBundle.getBundle couldn't find are remembered, per class
+ * loader and locale, so that each miss only costs one
+ * MissingResourceException.  {@link #getMissingBundleCount} and
+ * {@link #getSkippedMissCount} report how well that works.
+ */
+public final class ResourceBundleIndex {
+
+    private static final Logger logger = Logger.getLogger(ResourceBundleIndex.class.getName());
+    /**
+     * The name of the index file, in the resources directory.
+     */
+    public static final String INDEX_FILE_NAME = "bsaf-bundles.idx";
+    private static final int MAGIC = 0x42534958;  // "BSIX"
+    private static final int VERSION = 1;
+    private static final Object NO_INDEX = new Object();
+    private static final Map<ClassLoader, Map<String, Object>> indexes = new WeakHashMap<ClassLoader, Map<String, Object>>();
+    private static final ResourceBundle.Control control =
+            ResourceBundle.Control.getControl(ResourceBundle.Control.FORMAT_DEFAULT);
+    private static final Map<ClassLoader, Set<String>> missingBundles = new WeakHashMap<ClassLoader, Set<String>>();
+    private static final AtomicLong missingBundleCount = new AtomicLong();
+    private static final AtomicLong skippedMissCount = new AtomicLong();
+
+    private final Map<String, Map<String, String>> bundles;  // bundle simple name => key/value
+    private final Set<String> classBundles;  // simple names of classes in the directory
+    private final Map<String, Boolean> unindexedBundles = new ConcurrentHashMap<String, Boolean>();  // see isUnindexedBundle()
+
+    private ResourceBundleIndex(Map<String, Map<String, String>> bundles, Set<String> classBundles) {
+        this.bundles = bundles;
+        this.classBundles = classBundles;
+    }
+
+    /**
+     * Returns the (cached) index for a resources directory, like
+     * "myapp/resources/", or null if the directory doesn't have one.
+     */
+    static ResourceBundleIndex forDirectory(ClassLoader classLoader, String resourcesDir) {
+        Map<String, Object> classLoaderIndexes;
+        synchronized (indexes) {
+            classLoaderIndexes = indexes.get(classLoader);
+            if (classLoaderIndexes == null) {
+                classLoaderIndexes = new HashMap<String, Object>();
+                indexes.put(classLoader, classLoaderIndexes);
+            }
+        }
+        synchronized (classLoaderIndexes) {
+            Object index = classLoaderIndexes.get(resourcesDir);
+            if (index == null) {
+                index = read(classLoader, resourcesDir);
+                classLoaderIndexes.put(resourcesDir, (index == null) ? NO_INDEX : index);
+            }
+            return (index == NO_INDEX) ? null : (ResourceBundleIndex) index;
+        }
+    }
+
+    /* Reads and merges the indexes of every copy of resourcesDir on the
+     * class path.  If a bundle is in several indexes, the first one wins,
+     * like it does for ResourceBundle.getBundle.
+     */
+    private static ResourceBundleIndex read(ClassLoader classLoader, String resourcesDir) {
+        String path = resourcesDir + INDEX_FILE_NAME;
+        Enumeration<URL> urls;
+        try {
+            urls = classLoader.getResources(path);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "couldn't find ResourceBundle indexes " + path, e);
+            return null;
+        }
+        ResourceBundleIndex merged = null;
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            ResourceBundleIndex index;
+            try (InputStream in = url.openStream()) {
+                index = read(in.readAllBytes());
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "couldn't read ResourceBundle index " + url, e);
+                continue;
+            }
+            if (merged == null) {
+                merged = index;
+            } else {
+                for (Map.Entry<String, Map<String, String>> bundle : index.bundles.entrySet()) {
+                    if (!merged.bundles.containsKey(bundle.getKey())) {
+                        merged.bundles.put(bundle.getKey(), bundle.getValue());
+                    }
+                }
+                merged.classBundles.addAll(index.classBundles);
+            }
+        }
+        return merged;
+    }
+
+    static ResourceBundleIndex read(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) {
+            throw new IOException("not a ResourceBundle index, or an unsupported version");
+        }
+        String[] strings = new String[in.readInt()];
+        byte[] buffer = new byte[256];
+        for (int i = 0; i < strings.length; i++) {
+            int length = in.readInt();
+            if (length > buffer.length) {
+                buffer = new byte[length];
+            }
+            in.readFully(buffer, 0, length);
+            strings[i] = new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+        Set<String> classBundles = new HashSet<String>();
+        for (int i = in.readInt(); i > 0; i--) {
+            classBundles.add(strings[in.readInt()]);
+        }
+        Map<String, Map<String, String>> bundles = new HashMap<String, Map<String, String>>();
+        for (int i = in.readInt(); i > 0; i--) {
+            String bundleName = strings[in.readInt()];
+            int nEntries = in.readInt();
+            Map<String, String> entries = new HashMap<String, String>((nEntries * 4) / 3 + 1);
+            for (int j = 0; j < nEntries; j++) {
+                entries.put(strings[in.readInt()], strings[in.readInt()]);
+            }
+            bundles.put(bundleName, entries);
+        }
+        return new ResourceBundleIndex(bundles, classBundles);
+    }
+
+    /**
+     * Copies the resources of the named bundle family, resolved for locale,
+     * into map, like the keys and values of
+     * {@code ResourceBundle.getBundle(baseName, locale)}.  If the family
+     * isn't indexed because one of its bundles is defined by a class, or
+     * is in a copy of the resources directory that wasn't indexed, false
+     * is returned and map is unchanged.
+     * @param classLoader the class loader the index was read with
+     * @param resourcesDir the indexed resources directory, like "myapp/resources/"
+     * @param baseName the bundle's simple name, like "MyApp" or "MyApp_win"
+     * @param locale the locale to resolve the bundle for
+     * @param map the destination
+     * @return false if the bundle must be loaded with ResourceBundle.getBundle
+     */
+    boolean populate(ClassLoader classLoader, String resourcesDir, String baseName, Locale locale, Map<String, Object> map) {
+        List<String> bundleNames = candidateBundleNames(classLoader, resourcesDir, baseName, locale);
+        if (bundleNames == null) {
+            return false;
+        }
+        Locale defaultLocale = Locale.getDefault();
+        boolean baseBundleOnly = bundleNames.isEmpty() || bundleNames.get(0).equals(baseName);
+        if (baseBundleOnly && !locale.equals(defaultLocale)) {
+            // like ResourceBundle, fall back to the default locale
+            List<String> defaultBundleNames = candidateBundleNames(classLoader, resourcesDir, baseName, defaultLocale);
+            if (defaultBundleNames == null) {
+                return false;
+            }
+            if (!defaultBundleNames.isEmpty() && !defaultBundleNames.get(0).equals(baseName)) {
+                bundleNames = defaultBundleNames;
+            }
+        }
+        if (bundleNames.isEmpty()) {
+            skippedMissCount.incrementAndGet();
+        }
+        for (int i = bundleNames.size() - 1; i >= 0; i--) {
+            map.putAll(bundles.get(bundleNames.get(i)));
+        }
+        return true;
+    }
+
+    private static Set<String> missingBundles(ClassLoader classLoader) {
+        synchronized (missingBundles) {
+            Set<String> bundleNames = missingBundles.get(classLoader);
+            if (bundleNames == null) {
+                bundleNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                missingBundles.put(classLoader, bundleNames);
+            }
+            return bundleNames;
+        }
+    }
+
+    private static String missingBundleKey(String bundleName, Locale locale) {
+        // ResourceBundle.getBundle falls back to the default locale
+        return bundleName + "/" + locale + "/" + Locale.getDefault();
+    }
+
+    /**
+     * Returns true if ResourceBundle.getBundle has already failed to
+     * find the named bundle, see {@link #addMissingBundle}.
+     */
+    static boolean isMissingBundle(ClassLoader classLoader, String bundleName, Locale locale) {
+        if (missingBundles(classLoader).contains(missingBundleKey(bundleName, locale))) {
+            skippedMissCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records that ResourceBundle.getBundle couldn't find the named bundle.
+     */
+    static void addMissingBundle(ClassLoader classLoader, String bundleName, Locale locale) {
+        missingBundleCount.incrementAndGet();
+        missingBundles(classLoader).add(missingBundleKey(bundleName, locale));
+    }
+
+    /**
+     * Forgets the indexes and the missing bundles of classLoader, so
+     * that they're looked up again.  Used when bundles are hot reloaded,
+     * see {@link ResourceManager#setHotReloadEnabled}.
+     */
+    static void clearCaches(ClassLoader classLoader) {
+        synchronized (indexes) {
+            indexes.remove(classLoader);
+        }
+        synchronized (missingBundles) {
+            missingBundles.remove(classLoader);
+        }
+    }
+
+    /**
+     * Returns the number of times ResourceBundle.getBundle failed to
+     * find a bundle that a ResourceMap asked for, i.e. the number of
+     * MissingResourceExceptions thrown.
+     *
+     * @return the number of bundle lookups that failed
+     * @see #getSkippedMissCount
+     */
+    public static long getMissingBundleCount() {
+        return missingBundleCount.get();
+    }
+
+    /**
+     * Returns the number of ResourceBundle.getBundle lookups, for bundles
+     * that don't exist, that were skipped because an index, or an
+     * earlier lookup, showed that the bundle doesn't exist.
+     *
+     * @return the number of failing bundle lookups that were avoided
+     * @see #getMissingBundleCount
+     */
+    public static long getSkippedMissCount() {
+        return skippedMissCount.get();
+    }
+
+    /* Returns the names of the indexed bundles that are candidates for
+     * baseName and locale, most specific first, or null if any candidate
+     * is a class or isn't indexed.
+     */
+    private List<String> candidateBundleNames(ClassLoader classLoader, String resourcesDir, String baseName, Locale locale) {
+        List<String> bundleNames = new ArrayList<String>(3);
+        for (Locale candidate : control.getCandidateLocales(baseName, locale)) {
+            String bundleName = control.toBundleName(baseName, candidate);
+            if (classBundles.contains(bundleName)) {
+                return null;
+            }
+            if (bundles.containsKey(bundleName)) {
+                bundleNames.add(bundleName);
+            } else if (isUnindexedBundle(classLoader, resourcesDir, bundleName)) {
+                return null;
+            }
+        }
+        return bundleNames;
+    }
+
+    /* Returns true if a bundle that isn't in the index exists anyway,
+     * in a copy of the resources directory that wasn't indexed.  The
+     * answer is remembered, so each name is only looked up once.
+     */
+    private boolean isUnindexedBundle(ClassLoader classLoader, String resourcesDir, String bundleName) {
+        Boolean exists = unindexedBundles.get(bundleName);
+        if (exists == null) {
+            exists = (classLoader.getResource(resourcesDir + bundleName + ".properties") != null)
+                    || (classLoader.getResource(resourcesDir + bundleName + ".class") != null);
+            unindexedBundles.put(bundleName, exists);
+        }
+        return exists;
+    }
+
+    /**
+     * Writes an index of the <code>.properties</code> files in directory.
+     * @param directory a resources directory
+     * @param out the destination
+     * @return the number of bundles indexed
+     * @throws IOException if a bundle can't be read or the index can't be written
+     */
+    static int write(File directory, OutputStream out) throws IOException {
+        Map<String, Map<String, String>> bundles = new TreeMap<String, Map<String, String>>();
+        List<String> classBundles = new ArrayList<String>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String fileName = file.getName();
+                if (!file.isFile()) {
+                    continue;
+                }
+                if (fileName.endsWith(".properties")) {
+                    String bundleName = fileName.substring(0, fileName.length() - ".properties".length());
+                    try (InputStream in = new FileInputStream(file)) {
+                        ResourceBundle bundle = new PropertyResourceBundle(in);
+                        Map<String, String> entries = new TreeMap<String, String>();
+                        for (Enumeration<String> keys = bundle.getKeys(); keys.hasMoreElements();) {
+                            String key = keys.nextElement();
+                            entries.put(key, bundle.getString(key));
+                        }
+                        bundles.put(bundleName, entries);
+                    }
+                } else if (fileName.endsWith(".class")) {
+                    classBundles.add(fileName.substring(0, fileName.length() - ".class".length()));
+                }
+            }
+        }
+        Collections.sort(classBundles);
+        Map<String, Integer> stringIndexes = new LinkedHashMap<String, Integer>();
+        for (String name : classBundles) {
+            intern(stringIndexes, name);
+        }
+        for (Map.Entry<String, Map<String, String>> bundle : bundles.entrySet()) {
+            intern(stringIndexes, bundle.getKey());
+            for (Map.Entry<String, String> entry : bundle.getValue().entrySet()) {
+                intern(stringIndexes, entry.getKey());
+                intern(stringIndexes, entry.getValue());
+            }
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(stringIndexes.size());
+        for (String s : stringIndexes.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+        data.writeInt(classBundles.size());
+        for (String name : classBundles) {
+            data.writeInt(stringIndexes.get(name));
+        }
+        data.writeInt(bundles.size());
+        for (Map.Entry<String, Map<String, String>> bundle : bundles.entrySet()) {
+            data.writeInt(stringIndexes.get(bundle.getKey()));
+            data.writeInt(bundle.getValue().size());
+            for (Map.Entry<String, String> entry : bundle.getValue().entrySet()) {
+                data.writeInt(stringIndexes.get(entry.getKey()));
+                data.writeInt(stringIndexes.get(entry.getValue()));
+            }
+        }
+        data.flush();
+        return bundles.size();
+    }
+
+    private static void intern(Map<String, Integer> stringIndexes, String s) {
+        if (!stringIndexes.containsKey(s)) {
+            stringIndexes.put(s, stringIndexes.size());
+        }
+    }
+
+    /* Indexes every directory below root that contains .properties files.
+     */
+    private static void indexDirectories(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        boolean hasBundles = false;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                indexDirectories(file);
+            } else if (file.getName().endsWith(".properties")) {
+                hasBundles = true;
+            }
+        }
+        if (hasBundles) {
+            File indexFile = new File(directory, INDEX_FILE_NAME);
+            try (OutputStream out = new FileOutputStream(indexFile)) {
+                int nBundles = write(directory, out);
+                logger.fine(String.format("indexed %d bundles in %s", nBundles, indexFile));
+            }
+        }
+    }
+
+    /**
+     * Writes a {@value #INDEX_FILE_NAME} file in each directory, below the
+     * specified classes directories, that contains <code>.properties</code> files.
+     * @param args one or more classes directories, like {@code target/classes}
+     * @throws IOException if a bundle can't be read or an index can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: java " + ResourceBundleIndex.class.getName() + " classesDirectory...");
+            System.exit(1);
+        }
+        for (String arg : args) {
+            File root = new File(arg);
+            if (!root.isDirectory()) {
+                throw new IOException("not a directory: " + root);
+            }
+            indexDirectories(root);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An internal helper class: watches the resources directories of a
+ * ResourceManager's ResourceMaps, when they've been loaded from a
+ * directory rather than a jar, and reports the files that changed.
+ * Changes are coalesced: they're reported once no file has changed
+ * for {@link #DEBOUNCE_MILLIS}, so saving many files at once only
+ * triggers one report.  The watched ResourceMaps are weakly referenced,
+ * so that the watcher doesn't keep them, or their class loaders, from
+ * being garbage collected; directories are no longer watched once all
+ * of their ResourceMaps are gone.  See
+ * {@link ResourceManager#setHotReloadEnabled}.
+ */
+final class ResourceBundleWatcher {
+
+    private static final Logger logger = Logger.getLogger(ResourceBundleWatcher.class.getName());
+    static final long DEBOUNCE_MILLIS = 250L;
+
+    /**
+     * Receives the names of the files that changed in each watched
+     * directory, on the watcher's thread.  If the names are null,
+     * changes were lost and everything in the directory should be
+     * reloaded.
+     */
+    interface Listener {
+        void filesChanged(Map<Path, Set<String>> changes);
+    }
+
+    private final WatchService watchService;
+    private final Listener listener;
+    private final Map<WatchKey, Path> directories = new HashMap<WatchKey, Path>();
+    private final Map<Path, Set<ResourceMap>> resourceMaps = new HashMap<Path, Set<ResourceMap>>();
+
+    ResourceBundleWatcher(Listener listener) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.listener = listener;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "ResourceManager hot reload");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Watches the directories rm's bundles are loaded from.  Resources
+     * directories in jars aren't watched.
+     */
+    void register(ResourceMap rm) {
+        String resourcesDir = rm.getResourcesDir();
+        ClassLoader classLoader = rm.getClassLoader();
+        if ((resourcesDir == null) || (classLoader == null)) {
+            return;
+        }
+        Enumeration<URL> urls;
+        try {
+            urls = classLoader.getResources(resourcesDir);
+        } catch (IOException e) {
+            logger.log(Level.FINE, "can't find resources directory " + resourcesDir, e);
+            return;
+        }
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            if (!"file".equals(url.getProtocol())) {
+                continue;
+            }
+            Path directory;
+            try {
+                directory = new File(url.toURI()).toPath();
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                continue;
+            }
+            synchronized (this) {
+                pruneDirectories();
+                Set<ResourceMap> rms = resourceMaps.get(directory);
+                if (rms == null) {
+                    try {
+                        WatchKey key = directory.register(watchService,
+                                StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_MODIFY,
+                                StandardWatchEventKinds.ENTRY_DELETE);
+                        directories.put(key, directory);
+                    } catch (IOException | ClosedWatchServiceException e) {
+                        logger.log(Level.WARNING, "can't watch resources directory " + directory, e);
+                        continue;
+                    }
+                    rms = Collections.newSetFromMap(new WeakHashMap<ResourceMap, Boolean>());
+                    resourceMaps.put(directory, rms);
+                }
+                rms.add(rm);
+            }
+        }
+    }
+
+    /**
+     * Returns the ResourceMaps whose bundles are loaded from directory.
+     * If they've all been garbage collected, the directory is no longer
+     * watched.
+     */
+    synchronized Set<ResourceMap> getResourceMaps(Path directory) {
+        Set<ResourceMap> rms = resourceMaps.get(directory);
+        if (rms == null) {
+            return Collections.<ResourceMap>emptySet();
+        }
+        Set<ResourceMap> liveRMs = new HashSet<ResourceMap>(rms);
+        if (liveRMs.isEmpty()) {
+            unregister(directory);
+        }
+        return liveRMs;
+    }
+
+    /* Stops watching directory.
+     */
+    private void unregister(Path directory) {
+        resourceMaps.remove(directory);
+        for (Iterator<Map.Entry<WatchKey, Path>> entries = directories.entrySet().iterator(); entries.hasNext();) {
+            Map.Entry<WatchKey, Path> entry = entries.next();
+            if (entry.getValue().equals(directory)) {
+                entry.getKey().cancel();
+                entries.remove();
+            }
+        }
+    }
+
+    /* Stops watching the directories whose ResourceMaps have all been
+     * garbage collected.
+     */
+    private void pruneDirectories() {
+        for (Path directory : new ArrayList<Path>(resourceMaps.keySet())) {
+            if (resourceMaps.get(directory).isEmpty()) {
+                unregister(directory);
+            }
+        }
+    }
+
+    /**
+     * Stops watching.
+     */
+    void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "couldn't close WatchService", e);
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                Map<Path, Set<String>> changes = new LinkedHashMap<Path, Set<String>>();
+                WatchKey key = watchService.take();
+                while (key != null) {
+                    addChanges(key, changes);
+                    key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                try {
+                    listener.filesChanged(changes);
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "couldn't reload resources", e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed, see close()
+        }
+    }
+
+    private void addChanges(WatchKey key, Map<Path, Set<String>> changes) {
+        Path directory;
+        synchronized (this) {
+            directory = directories.get(key);
+        }
+        if (directory == null) {
+            key.cancel();  // no longer watched, see unregister()
+            return;
+        }
+        boolean lostChanges = changes.containsKey(directory) && (changes.get(directory) == null);
+        Set<String> fileNames = lostChanges ? null : changes.get(directory);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                lostChanges = true;
+            } else if (!lostChanges) {
+                if (fileNames == null) {
+                    fileNames = new HashSet<String>();
+                }
+                fileNames.add(((Path) event.context()).getFileName().toString());
+            }
+        }
+        if (lostChanges) {
+            changes.put(directory, null);
+        } else if (fileNames != null) {
+            changes.put(directory, fileNames);
+        }
+        key.reset();
+    }
+}
@@ -11,8 +11,12 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * A base class for converting arbitrary types to and from Strings, as well as 
@@ -29,7 +33,21 @@ import java.util.List;
  * This class maintains a registry of ResourceConverters.  
  * The <code>forType</code> method returns the first ResourceConverter that
  * supports a particular type, new ResourceConverters can be added with 
- * <code>register()</code>.  A small set of generic ResourceConverters are
+ * <code>register()</code>.  Converters registered with a higher priority
+ * come first, converters with the same priority are found in the order
+ * they were registered, after the default converters listed below and
+ * the ones defined by {@link ResourceMap}.  The converter found for each
+ * type is cached, the cache is discarded when a new converter is
+ * registered.  The registry is thread safe.
+ * <p>
+ * ResourceConverters can also be installed as {@link ServiceLoader}
+ * providers of the <code>org.jdesktop.application.ResourceConverter</code>
+ * service.  Providers visible to the context class loader are registered,
+ * with the default priority, when this class is initialized.  Providers
+ * loaded by other class loaders, plugins for example, can be registered
+ * with <code>registerInstalled()</code>.
+ * <p>
+ * A small set of generic ResourceConverters are
  * registered by default.  They support the following types:
  * <ul>
  * <li><code>Boolean</code></li>
@@ -57,6 +75,13 @@ import java.util.List;
  */
 public abstract class ResourceConverter {
 
+    private static final Logger logger = Logger.getLogger(ResourceConverter.class.getName());
+
+    /**
+     * The priority of converters registered with {@link #register(ResourceConverter)}.
+     */
+    public static final int DEFAULT_PRIORITY = 0;
+
     protected final Class type;
 
     /**
@@ -128,14 +153,64 @@ public abstract class ResourceConverter {
     }
 
     /**
-     * Registers a {@code ResourceConverter}
+     * Registers a {@code ResourceConverter} with the {@link #DEFAULT_PRIORITY default priority}.
      * @param resourceConverter the resource converter to be registered
+     * @see #register(ResourceConverter, int)
      */
     public static void register(ResourceConverter resourceConverter) {
+        register(resourceConverter, DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Registers a {@code ResourceConverter} with the specified priority.
+     * {@link #forType forType} returns the converter with the highest
+     * priority that supports a type.  If several converters with that
+     * priority support the type, a default converter is returned first,
+     * then the one registered first.  To override one of the default
+     * converters, register a converter for the same type with a priority
+     * greater than {@link #DEFAULT_PRIORITY}.
+     * 
+     * @param resourceConverter the resource converter to be registered
+     * @param priority the converter's priority
+     */
+    public static void register(ResourceConverter resourceConverter, int priority) {
         if (resourceConverter == null) {
             throw new IllegalArgumentException("null resourceConverter");
         }
-        resourceConverters.add(resourceConverter);
+        synchronized (ResourceConverter.class) {
+            registry = new Registry(registry, resourceConverter, priority, false);
+        }
+    }
+
+    /* Registers one of the default converters defined by ResourceMap.
+     * Default converters come before the converters registered with
+     * the same priority, whenever they're registered.
+     */
+    static void registerDefault(ResourceConverter resourceConverter) {
+        synchronized (ResourceConverter.class) {
+            registry = new Registry(registry, resourceConverter, DEFAULT_PRIORITY, true);
+        }
+    }
+
+    /**
+     * Registers the {@code ResourceConverter} {@link ServiceLoader} providers 
+     * found by the specified class loader, with the {@link #DEFAULT_PRIORITY default priority}.
+     * Providers that can't be instantiated are logged and skipped.
+     * 
+     * @param classLoader the class loader used to find the providers
+     */
+    public static void registerInstalled(ClassLoader classLoader) {
+        registerInstalled(ServiceLoader.load(ResourceConverter.class, classLoader));
+    }
+
+    private static void registerInstalled(ServiceLoader<ResourceConverter> serviceLoader) {
+        try {
+            for (ResourceConverter resourceConverter : serviceLoader) {
+                register(resourceConverter);
+            }
+        } catch (ServiceConfigurationError e) {
+            logger.log(Level.WARNING, "couldn't load ResourceConverter providers", e);
+        }
     }
 
     /**
@@ -148,14 +223,95 @@ public abstract class ResourceConverter {
         if (type == null) {
             throw new IllegalArgumentException("null type");
         }
-        for (ResourceConverter sc : resourceConverters) {
-            if (sc.supportsType(type)) {
-                return sc;
+        Lookup lookup = convertersByType.get(type);
+        Registry current = registry;
+        while (lookup.registry != current) {
+            convertersByType.remove(type);  // computed before the last register()
+            lookup = convertersByType.get(type);
+            current = registry;
+        }
+        return lookup.converter;
+    }
+
+    /* The per-type cache of forType() results.  Each result records
+     * the registry it was found in, results from a registry that has
+     * since been replaced are recomputed.
+     */
+    private static final ClassValue<Lookup> convertersByType = new ClassValue<Lookup>() {
+        @Override
+        protected Lookup computeValue(Class<?> type) {
+            Registry current = registry;
+            return new Lookup(current, current.find(type));
+        }
+    };
+
+    private static final class Lookup {
+
+        final Registry registry;
+        final ResourceConverter converter;
+
+        Lookup(Registry registry, ResourceConverter converter) {
+            this.registry = registry;
+            this.converter = converter;
+        }
+    }
+
+    /* An immutable list of registered converters, in forType() order.
+     * Registering a converter replaces the (volatile) registry, which
+     * also invalidates the forType() cache.
+     */
+    private static final class Registry {
+
+        private final List<ResourceConverter> converters;
+        private final List<Integer> priorities;
+        private final List<Boolean> defaults;
+
+        Registry(ResourceConverter... converters) {
+            List<ResourceConverter> convertersList = new ArrayList<ResourceConverter>();
+            List<Integer> prioritiesList = new ArrayList<Integer>();
+            List<Boolean> defaultsList = new ArrayList<Boolean>();
+            for (ResourceConverter converter : converters) {
+                convertersList.add(converter);
+                prioritiesList.add(DEFAULT_PRIORITY);
+                defaultsList.add(Boolean.TRUE);
+            }
+            this.converters = Collections.unmodifiableList(convertersList);
+            this.priorities = Collections.unmodifiableList(prioritiesList);
+            this.defaults = Collections.unmodifiableList(defaultsList);
+        }
+
+        /* Default converters are inserted after the other defaults with
+         * the same priority, other converters after all of the converters
+         * with the same priority.
+         */
+        Registry(Registry registry, ResourceConverter converter, int priority, boolean isDefault) {
+            List<ResourceConverter> convertersList = new ArrayList<ResourceConverter>(registry.converters);
+            List<Integer> prioritiesList = new ArrayList<Integer>(registry.priorities);
+            List<Boolean> defaultsList = new ArrayList<Boolean>(registry.defaults);
+            int i = 0;
+            while ((i < prioritiesList.size()) && ((prioritiesList.get(i) > priority) ||
+                    ((prioritiesList.get(i) == priority) && (defaultsList.get(i) || !isDefault)))) {
+                i += 1;
             }
+            convertersList.add(i, converter);
+            prioritiesList.add(i, priority);
+            defaultsList.add(i, isDefault);
+            this.converters = Collections.unmodifiableList(convertersList);
+            this.priorities = Collections.unmodifiableList(prioritiesList);
+            this.defaults = Collections.unmodifiableList(defaultsList);
+        }
+
+        ResourceConverter find(Class type) {
+            for (ResourceConverter converter : converters) {
+                if (converter.supportsType(type)) {
+                    return converter;
+                }
+            }
+            return null;
         }
-        return null;
     }
-    private static ResourceConverter[] resourceConvertersArray = {
+
+    private static volatile Registry registry = new Registry(
         new BooleanResourceConverter("true", "on", "yes"),
         new IntegerResourceConverter(),
         new MessageFormatResourceConverter(),
@@ -166,9 +322,11 @@ public abstract class ResourceConverter {
         new ByteResourceConverter(),
         new URLResourceConverter(),
         new URIResourceConverter()
-    };
-    private static List<ResourceConverter> resourceConverters =
-            new ArrayList<ResourceConverter>(Arrays.asList(resourceConvertersArray));
+    );
+
+    static {
+        registerInstalled(ServiceLoader.load(ResourceConverter.class));
+    }
 
     private static class BooleanResourceConverter extends ResourceConverter {
 
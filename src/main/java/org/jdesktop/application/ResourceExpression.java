@@ -0,0 +1,127 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An internal helper class: a String resource value that contains
+ * <code>${key}</code> variables, compiled once into the literal text
+ * between the variables and the variables' keys.  The value of an
+ * expression is the literal text with each variable replaced by the
+ * value of its String resource.  To include "${" in a resource, insert
+ * a backslash before the "$".  The value of the special expression
+ * <code>${null}</code> is null.  See {@link ResourceMap#getObject}.
+ */
+final class ResourceExpression {
+
+    private final String source;
+    private final String[] literals;  // literals.length == keys.length + 1
+    private final String[] keys;
+    private final boolean nullValue;
+
+    private ResourceExpression(String source, List<String> literals, List<String> keys, boolean nullValue) {
+        this.source = source;
+        this.literals = literals.toArray(new String[literals.size()]);
+        this.keys = keys.toArray(new String[keys.size()]);
+        this.nullValue = nullValue;
+    }
+
+    /**
+     * Returns true if s contains a (possibly escaped) variable.
+     * Only strings for which this method returns true need to be compiled.
+     */
+    static boolean isExpression(String s) {
+        return s.contains("${");
+    }
+
+    /**
+     * Compiles an expression like <code>"${hello} ${place}"</code>.
+     * @param expr the expression
+     * @return the compiled expression
+     * @throws ResourceMap.LookupException if a variable doesn't have a closing brace
+     */
+    static ResourceExpression compile(String expr) {
+        List<String> literals = new ArrayList<String>();
+        List<String> keys = new ArrayList<String>();
+        if (expr.trim().equals("${null}")) {
+            literals.add("");
+            return new ResourceExpression(expr, literals, keys, true);
+        }
+        StringBuilder literal = new StringBuilder();
+        int i0 = 0, i1;
+        while ((i1 = expr.indexOf("${", i0)) != -1) {
+            if ((i1 == 0) || (expr.charAt(i1 - 1) != '\\')) {
+                int i2 = expr.indexOf("}", i1);
+                if ((i2 != -1) && (i2 > i1 + 2)) {
+                    literal.append(expr, i0, i1);
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    keys.add(expr.substring(i1 + 2, i2));
+                    i0 = i2 + 1;  // skip trailing "}"
+                } else {
+                    String msg = String.format("no closing brace in \"%s\"", expr);
+                    throw new ResourceMap.LookupException(msg, "<not found>", String.class);
+                }
+            } else {  // we've found an escaped variable - "\${"
+                literal.append(expr, i0, i1 - 1);
+                literal.append("${");
+                i0 = i1 + 2; // skip past "${"
+            }
+        }
+        literal.append(expr, i0, expr.length());
+        literals.add(literal.toString());
+        return new ResourceExpression(expr, literals, keys, false);
+    }
+
+    /**
+     * Returns the String this expression was compiled from.
+     */
+    String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns true if this is the <code>${null}</code> expression.
+     */
+    boolean isNull() {
+        return nullValue;
+    }
+
+    /**
+     * Returns the number of variables in this expression.
+     */
+    int getKeyCount() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the resource key of the variable at index.
+     */
+    String getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Returns the value of this expression given the values of its
+     * variables, in order.  Returns null for <code>${null}</code>.
+     * @param values one value per variable
+     * @return the value of this expression
+     */
+    String evaluate(String[] values) {
+        if (nullValue) {
+            return null;
+        }
+        if (keys.length == 0) {
+            return literals[0];
+        }
+        StringBuilder value = new StringBuilder(source.length() + 16 * keys.length);
+        value.append(literals[0]);
+        for (int i = 0; i < keys.length; i++) {
+            value.append(values[i]).append(literals[i + 1]);
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An internal helper class that caches the <code>&#064;Resource</code>
+ * fields of a class for {@link ResourceMap#injectFields}.  Each class's
+ * declared fields are scanned once, the first time an instance of
+ * the class is injected, and the result is kept in a {@link ClassValue}
+ * so that it doesn't prevent the class from being unloaded.  For each
+ * field the resource key is resolved and the field is made accessible
+ * up front, so repeated injections do no reflective lookups.
+ */
+final class ResourceFields {
+
+    private static final ClassValue<ResourceFields> resourceFields = new ClassValue<ResourceFields>() {
+        @Override
+        protected ResourceFields computeValue(Class<?> type) {
+            return new ResourceFields(type);
+        }
+    };
+
+    private final List<ResourceField> fields;
+
+    private ResourceFields(Class<?> targetType) {
+        List<ResourceField> list = new ArrayList<ResourceField>();
+        String keyPrefix = targetType.getSimpleName() + ".";
+        for (Field field : targetType.getDeclaredFields()) {
+            Resource resource = field.getAnnotation(Resource.class);
+            if (resource != null) {
+                String rKey = resource.key();
+                String key = (rKey.length() > 0) ? rKey : keyPrefix + field.getName();
+                list.add(new ResourceField(field, key));
+            }
+        }
+        fields = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns the (cached) <code>&#064;Resource</code> fields declared by targetType.
+     * @param targetType the class of the object to be injected
+     * @return the <code>&#064;Resource</code> fields declared by targetType
+     */
+    static ResourceFields forClass(Class<?> targetType) {
+        return resourceFields.get(targetType);
+    }
+
+    List<ResourceField> getFields() {
+        return fields;
+    }
+
+    /**
+     * One <code>&#064;Resource</code> field, its resource key, and the type
+     * of the resource(s) used to initialize it.  For array valued fields the
+     * type is the array's component type.
+     */
+    static final class ResourceField {
+
+        private final Field field;
+        private final String key;
+        private final boolean array;
+        private final Class<?> type;
+
+        private ResourceField(Field field, String key) {
+            this.field = field;
+            this.key = key;
+            this.array = field.getType().isArray();
+            this.type = array ? field.getType().getComponentType() : field.getType();
+            try {
+                field.setAccessible(true);
+            } catch (RuntimeException ignore) {
+                /* The module doesn't open the field's package to us,
+                 * setting the field will fail with an IllegalAccessException
+                 */
+            }
+        }
+
+        Field getField() {
+            return field;
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        boolean isArray() {
+            return array;
+        }
+
+        Class<?> getType() {
+            return type;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An internal helper class: a {@link String#format(String, Object...)
+ * format} string resource, parsed once for one locale.  Plain
+ * <code>%s</code> and <code>%d</code> specifiers are appended directly,
+ * other specifiers are formatted one at a time with a {@link Formatter}.
+ * Format strings this class doesn't understand are handed to a
+ * Formatter as a whole, so that errors are reported exactly as
+ * String.format would report them.  See {@link ResourceMap#getString}.
+ */
+final class ResourceFormat {
+
+    // the specifier syntax used by java.util.Formatter
+    private static final Pattern specifierPattern =
+            Pattern.compile("%(\\d+\\$)?([-#+ 0,(\\<]*)?(\\d+)?(\\.\\d+)?([tT])?([a-zA-Z%])");
+    private static final String conversions = "bBhHsScCdoxXeEfgGaAtT%n";
+    private static final int STRING = 0;
+    private static final int DECIMAL = 1;
+    private static final int GENERAL = 2;
+
+    private final String pattern;
+    private final Locale locale;
+    private final boolean compiled;   // false if pattern is formatted as a whole
+    private final String[] literals;  // literals.length == specifiers.length + 1
+    private final String[] specifiers;
+    private final int[] kinds;
+    private final int[] argIndexes;
+
+    private ResourceFormat(String pattern, Locale locale, List<String> literals, List<String> specifiers, List<Integer> kinds, List<Integer> argIndexes) {
+        this.pattern = pattern;
+        this.locale = locale;
+        this.compiled = (literals != null);
+        if (compiled) {
+            int n = specifiers.size();
+            this.literals = literals.toArray(new String[n + 1]);
+            this.specifiers = specifiers.toArray(new String[n]);
+            this.kinds = new int[n];
+            this.argIndexes = new int[n];
+            for (int i = 0; i < n; i++) {
+                this.kinds[i] = kinds.get(i);
+                this.argIndexes[i] = argIndexes.get(i);
+            }
+        } else {
+            this.literals = null;
+            this.specifiers = null;
+            this.kinds = null;
+            this.argIndexes = null;
+        }
+    }
+
+    /**
+     * Parses a format string.  Parsing never fails, errors are
+     * reported when the format is applied.
+     * @param pattern the format string
+     * @param locale the locale used to format arguments
+     * @return the parsed format string
+     */
+    static ResourceFormat compile(String pattern, Locale locale) {
+        boolean asciiDigits = DecimalFormatSymbols.getInstance(locale).getZeroDigit() == '0';
+        List<String> literals = new ArrayList<String>();
+        List<String> specifiers = new ArrayList<String>();
+        List<Integer> kinds = new ArrayList<Integer>();
+        List<Integer> argIndexes = new ArrayList<Integer>();
+        StringBuilder literal = new StringBuilder();
+        Matcher m = specifierPattern.matcher(pattern);
+        int lastIndex = -1, ordinaryIndex = -1;
+        int i0 = 0;
+        while (true) {
+            int i1 = pattern.indexOf('%', i0);
+            if (i1 == -1) {
+                break;
+            }
+            if (!m.find(i1) || (m.start() != i1) || (conversions.indexOf(m.group(6).charAt(0)) == -1)) {
+                return new ResourceFormat(pattern, locale, null, null, null, null);
+            }
+            literal.append(pattern, i0, i1);
+            i0 = m.end();
+            String index = m.group(1);
+            String flags = (m.group(2) == null) ? "" : m.group(2);
+            String width = (m.group(3) == null) ? "" : m.group(3);
+            String precision = (m.group(4) == null) ? "" : m.group(4);
+            String prefix = (m.group(5) == null) ? "" : m.group(5);
+            char conversion = m.group(6).charAt(0);
+            if (conversion == '%' && prefix.isEmpty()) {
+                if (!(flags + width + precision).isEmpty()) {
+                    return new ResourceFormat(pattern, locale, null, null, null, null);
+                }
+                literal.append('%');
+                continue;
+            }
+            if (conversion == 'n' && prefix.isEmpty()) {
+                if (!(flags + width + precision).isEmpty()) {
+                    return new ResourceFormat(pattern, locale, null, null, null, null);
+                }
+                literal.append(System.lineSeparator());
+                continue;
+            }
+            int argIndex;
+            if (index != null) {
+                argIndex = Integer.parseInt(index.substring(0, index.length() - 1)) - 1;
+                if (argIndex < 0) {
+                    return new ResourceFormat(pattern, locale, null, null, null, null);
+                }
+            } else if (flags.indexOf('<') != -1) {
+                if (lastIndex == -1) {
+                    return new ResourceFormat(pattern, locale, null, null, null, null);
+                }
+                argIndex = lastIndex;
+                flags = flags.replace("<", "");
+            } else {
+                argIndex = ++ordinaryIndex;
+            }
+            lastIndex = argIndex;
+            String specifier = "%" + flags + width + precision + prefix + conversion;
+            int kind = GENERAL;
+            if (specifier.equals("%s")) {
+                kind = STRING;
+            } else if (specifier.equals("%d") && asciiDigits) {
+                kind = DECIMAL;
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            specifiers.add(specifier);
+            kinds.add(kind);
+            argIndexes.add(argIndex);
+        }
+        literal.append(pattern, i0, pattern.length());
+        literals.add(literal.toString());
+        return new ResourceFormat(pattern, locale, literals, specifiers, kinds, argIndexes);
+    }
+
+    /**
+     * Returns the format string this format was parsed from.
+     */
+    String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Returns the locale this format was parsed for.
+     */
+    Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * Formats args, exactly like {@link String#format(Locale, String, Object...)}.
+     */
+    String format(Object[] args) {
+        StringBuilder sb = new StringBuilder(pattern.length() + 16 * args.length);
+        appendTo(sb, args);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the formatted args to sb.
+     */
+    void appendTo(StringBuilder sb, Object[] args) {
+        if (!compiled) {
+            new Formatter(sb, locale).format(pattern, args);
+            return;
+        }
+        Formatter formatter = null;
+        sb.append(literals[0]);
+        for (int i = 0; i < specifiers.length; i++) {
+            int argIndex = argIndexes[i];
+            if ((args == null) || (argIndex >= args.length)) {
+                throw new MissingFormatArgumentException(specifiers[i]);
+            }
+            Object arg = args[argIndex];
+            int kind = kinds[i];
+            if ((kind == STRING) && !(arg instanceof Formattable)) {
+                sb.append(arg);
+            } else if ((kind == DECIMAL) && ((arg instanceof Integer) || (arg instanceof Long) || (arg instanceof Short) || (arg instanceof Byte))) {
+                sb.append(((Number) arg).longValue());
+            } else {
+                if (formatter == null) {
+                    formatter = new Formatter(sb, locale);
+                }
+                formatter.format(specifiers[i], arg);
+            }
+            sb.append(literals[i + 1]);
+        }
+    }
+}
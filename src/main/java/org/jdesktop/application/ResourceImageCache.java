@@ -0,0 +1,594 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.MediaTracker;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.swing.ImageIcon;
+
+/**
+ * The images loaded by the {@link ResourceMap} Icon, ImageIcon and Image
+ * resource converters, shared by all ResourceMaps.  Images are identified
+ * by their resolved URL, so an icon that's referred to by the resources
+ * of many classes is only loaded once.
+ * <p>
+ * The most recently used images are kept until their total size,
+ * estimated at four bytes per pixel, exceeds the {@link #getMaximumSize
+ * maximum size}.  Less recently used images are evicted to soft
+ * references: they're reused if they haven't been garbage collected
+ * by the time they're needed again.
+ * <pre>
+ * ResourceImageCache cache = ResourceImageCache.getInstance();
+ * cache.setMaximumSize(32 * 1024 * 1024);
+ * logger.fine("image cache hits: " + cache.getHitCount() + " misses: " + cache.getMissCount());
+ * </pre>
+ * If {@link #setDeferredLoading deferred loading} is enabled, the Icon
+ * and ImageIcon converters return icons that aren't decoded until
+ * they're first painted, so that creating the actions and components
+ * of a large view doesn't decode any images.
+ * <p>
+ * If {@link #setMultiResolution multi-resolution} images are enabled,
+ * HiDPI variants of an image, like {@code icon@1.5x.png} and
+ * {@code icon@2x.png} for {@code icon.png}, are found automatically.
+ * If an image has variants, the converters return a
+ * {@link java.awt.image.MultiResolutionImage MultiResolutionImage} that
+ * only decodes a variant when it's drawn at the matching scale.
+ * See {@link #setMultiResolution}.
+ * <p>
+ * Icons that are cut from an atlas image, see
+ * {@link ResourceMap#getImageIcon}, are cached too; the atlas image is
+ * only loaded once.
+ */
+public final class ResourceImageCache {
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 16L * 1024 * 1024;
+    private static final ResourceImageCache instance = new ResourceImageCache();
+    private static final String[] VARIANT_SUFFIXES = {"@1.5x", "@2x"};
+    private static final double[] VARIANT_SCALES = {1.5, 2.0};
+
+    private final LinkedHashMap<String, CachedImage> images =
+            new LinkedHashMap<String, CachedImage>(64, 0.75f, true);  // in LRU order
+    private final Map<String, SoftImage> evictedImages = new HashMap<String, SoftImage>();
+    private final ReferenceQueue<Image> evictedImagesQueue = new ReferenceQueue<Image>();
+    private long maximumSize = DEFAULT_MAXIMUM_SIZE;
+    private long size = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+    private boolean deferredLoading = false;
+    private boolean prefetching = false;
+    private ExecutorService prefetchExecutor = null;  // see getPrefetchExecutor()
+    private final Map<String, Dimension> imageSizes = new HashMap<String, Dimension>();  // see getImageSize()
+    private boolean multiResolution = false;
+    private final Map<String, Variants> variants = new HashMap<String, Variants>();  // see getVariants()
+
+    private static final class CachedImage {
+
+        private final Image image;
+        private final long size;
+
+        CachedImage(Image image, long size) {
+            this.image = image;
+            this.size = size;
+        }
+    }
+
+    private static final class SoftImage extends SoftReference<Image> {
+
+        private final String key;
+        private final long size;
+
+        SoftImage(String key, CachedImage cachedImage, ReferenceQueue<Image> queue) {
+            super(cachedImage.image, queue);
+            this.key = key;
+            this.size = cachedImage.size;
+        }
+    }
+
+    /* The URLs of an image and of its HiDPI variants, in increasing order
+     * of scale.  The base image is first, its scale is 1.
+     */
+    private static final class Variants {
+
+        private final URL[] urls;
+        private final double[] scales;
+
+        Variants(List<URL> urls, List<Double> scales) {
+            this.urls = urls.toArray(new URL[urls.size()]);
+            this.scales = new double[scales.size()];
+            for (int i = 0; i < this.scales.length; i++) {
+                this.scales[i] = scales.get(i);
+            }
+        }
+    }
+
+    ResourceImageCache() {
+    }
+
+    /**
+     * Returns the cache shared by all ResourceMaps.
+     *
+     * @return the shared image cache
+     */
+    public static ResourceImageCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the image loaded from url, or a MultiResolutionImage if
+     * the image has HiDPI variants.
+     */
+    Image getImage(URL url) {
+        ResourceMultiResolutionImage image = getMultiResolutionImage(url);
+        return (image != null) ? image : getSingleResolutionImage(url);
+    }
+
+    /* Returns a MultiResolutionImage for the image at url and its HiDPI
+     * variants, or null if multiResolution is false or if the image
+     * doesn't have any variants.  Nothing is decoded.
+     */
+    private ResourceMultiResolutionImage getMultiResolutionImage(URL url) {
+        boolean findVariants;
+        synchronized (this) {
+            findVariants = multiResolution;
+        }
+        if (findVariants) {
+            Variants imageVariants = getVariants(url);
+            if (imageVariants.urls.length > 1) {
+                return new ResourceMultiResolutionImage(this, imageVariants.urls, imageVariants.scales, getImageSize(url));
+            }
+        }
+        return null;
+    }
+
+    /* Returns the (cached) HiDPI variants of the image at url.  See
+     * exists() for how variants are found.
+     */
+    private Variants getVariants(URL url) {
+        String key = url.toExternalForm();
+        synchronized (this) {
+            Variants imageVariants = variants.get(key);
+            if (imageVariants != null) {
+                return imageVariants;
+            }
+        }
+        List<URL> urls = new ArrayList<URL>(VARIANT_SUFFIXES.length + 1);
+        List<Double> scales = new ArrayList<Double>(VARIANT_SUFFIXES.length + 1);
+        urls.add(url);
+        scales.add(1.0);
+        int slash = key.lastIndexOf('/');
+        int dot = key.lastIndexOf('.');
+        if (dot < slash) {
+            dot = key.length();
+        }
+        for (int i = 0; i < VARIANT_SUFFIXES.length; i++) {
+            try {
+                URL variantURL = new URL(key.substring(0, dot) + VARIANT_SUFFIXES[i] + key.substring(dot));
+                if (exists(variantURL)) {
+                    urls.add(variantURL);
+                    scales.add(VARIANT_SCALES[i]);
+                }
+            } catch (IOException ignore) {
+                // there's no such variant
+            }
+        }
+        Variants imageVariants = new Variants(urls, scales);
+        synchronized (this) {
+            variants.put(key, imageVariants);
+        }
+        return imageVariants;
+    }
+
+    /* Returns true if there's a resource at url.  Files and jar entries
+     * are checked without reading them, other URLs by opening a stream.
+     */
+    private static boolean exists(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return new File(url.toURI()).isFile();
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                return false;
+            }
+        }
+        URLConnection connection = url.openConnection();
+        if (connection instanceof JarURLConnection) {
+            try {
+                return ((JarURLConnection) connection).getJarEntry() != null;
+            } catch (FileNotFoundException e) {
+                return false;  // the jar file doesn't have the entry
+            }
+        }
+        InputStream in = connection.getInputStream();
+        in.close();
+        return true;
+    }
+
+    /**
+     * Returns the image loaded from url, loading it if it isn't cached.
+     * Images that couldn't be loaded are returned but not cached.
+     */
+    Image getSingleResolutionImage(URL url) {
+        String key = url.toExternalForm();
+        synchronized (this) {
+            Image image = lookup(key);
+            if (image != null) {
+                hitCount += 1;
+                return image;
+            }
+            missCount += 1;
+        }
+        /* Images are loaded without holding the lock.  If two threads
+         * load the same image, the first one to finish wins.
+         */
+        ImageIcon icon = new ImageIcon(Toolkit.getDefaultToolkit().createImage(url));
+        Image image = icon.getImage();
+        if (icon.getImageLoadStatus() != MediaTracker.COMPLETE) {
+            return image;
+        }
+        return add(key, image, 4L * icon.getIconWidth() * icon.getIconHeight());
+    }
+
+    /* Adds image to the cache and returns it, unless another thread has
+     * already added an image for key.  Then that image is returned.
+     */
+    private synchronized Image add(String key, Image image, long imageSize) {
+        Image otherImage = lookup(key);
+        if (otherImage != null) {
+            return otherImage;
+        }
+        images.put(key, new CachedImage(image, imageSize));
+        size += imageSize;
+        trim();
+        return image;
+    }
+
+    /**
+     * Returns the region of the (atlas) image loaded from url.  The atlas
+     * and its regions are cached like other images.
+     * @throws IllegalArgumentException if the atlas couldn't be loaded
+     *     or if the region isn't inside it
+     */
+    Image getAtlasImage(URL url, Rectangle region) {
+        String key = url.toExternalForm() + "#" + region.x + "," + region.y + "," + region.width + "," + region.height;
+        synchronized (this) {
+            Image image = lookup(key);
+            if (image != null) {
+                hitCount += 1;
+                return image;
+            }
+            missCount += 1;
+        }
+        Image atlas = getSingleResolutionImage(url);
+        Rectangle bounds = new Rectangle(0, 0, atlas.getWidth(null), atlas.getHeight(null));
+        if (region.isEmpty() || !bounds.contains(region)) {
+            String msg = String.format("atlas region %s isn't inside atlas image %s %s", region, url, bounds.getSize());
+            throw new IllegalArgumentException(msg);
+        }
+        BufferedImage image = new BufferedImage(region.width, region.height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.drawImage(atlas, -region.x, -region.y, null);
+        } finally {
+            g.dispose();
+        }
+        return add(key, image, 4L * region.width * region.height);
+    }
+
+    /**
+     * Returns an ImageIcon for the image loaded from url.  The ImageIcon
+     * is new, only the Image is shared.  If deferredLoading is true, and
+     * the image isn't cached, the image isn't loaded until it's needed.
+     * Images with HiDPI variants are never loaded by the icon, see
+     * MultiResolutionImageIcon.
+     */
+    ImageIcon getImageIcon(URL url) {
+        String key = url.toExternalForm();
+        ResourceMultiResolutionImage multiResolutionImage = getMultiResolutionImage(url);
+        if (multiResolutionImage != null) {
+            return new MultiResolutionImageIcon(multiResolutionImage, key);
+        }
+        boolean deferred;
+        boolean prefetch;
+        synchronized (this) {
+            deferred = deferredLoading && !images.containsKey(key);
+            prefetch = prefetching;
+        }
+        if (deferred) {
+            Dimension size = getImageSize(url);
+            if (size != null) {
+                final DeferredImageIcon icon = new DeferredImageIcon(this, url, size.width, size.height);
+                if (prefetch) {
+                    getPrefetchExecutor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            icon.load();
+                        }
+                    });
+                }
+                return icon;
+            }
+        }
+        return new ImageIcon(getSingleResolutionImage(url), key);
+    }
+
+    /* Returns the size of the image at url, read from the image's header
+     * with ImageIO, or null if ImageIO can't read it.  Sizes are cached.
+     */
+    private Dimension getImageSize(URL url) {
+        String key = url.toExternalForm();
+        synchronized (this) {
+            Dimension size = imageSizes.get(key);
+            if (size != null) {
+                return size;
+            }
+        }
+        Dimension size = null;
+        try (InputStream stream = url.openStream(); ImageInputStream in = new MemoryCacheImageInputStream(stream)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (readers.hasNext()) {
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(in, true, true);
+                    size = new Dimension(reader.getWidth(0), reader.getHeight(0));
+                } finally {
+                    reader.dispose();
+                }
+            }
+        } catch (IOException ignore) {
+            // the image will be loaded now, and the error reported then
+        }
+        if (size != null) {
+            synchronized (this) {
+                imageSizes.put(key, size);
+            }
+        }
+        return size;
+    }
+
+    /* Lazily creates the daemon thread used to prefetch deferred images.
+     * The thread exits after a few idle seconds.
+     */
+    private synchronized ExecutorService getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            ThreadFactory threadFactory = new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ResourceImageCache prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    1, 1,
+                    5L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), threadFactory);
+            executor.allowCoreThreadTimeOut(true);
+            prefetchExecutor = executor;
+        }
+        return prefetchExecutor;
+    }
+
+    /* Returns the cached image for key, or null.  An evicted image that
+     * hasn't been collected yet becomes the most recently used image.
+     */
+    private Image lookup(String key) {
+        CachedImage cachedImage = images.get(key);
+        if (cachedImage != null) {
+            return cachedImage.image;
+        }
+        expungeEvictedImages();
+        SoftImage softImage = evictedImages.remove(key);
+        Image image = (softImage == null) ? null : softImage.get();
+        if (image != null) {
+            images.put(key, new CachedImage(image, softImage.size));
+            size += softImage.size;
+            trim();
+        }
+        return image;
+    }
+
+    /* Evicts the least recently used images to soft references until
+     * the cache fits in maximumSize.  The most recently used image is
+     * always kept.
+     */
+    private void trim() {
+        Iterator<Map.Entry<String, CachedImage>> entries = images.entrySet().iterator();
+        while ((size > maximumSize) && (images.size() > 1)) {
+            Map.Entry<String, CachedImage> entry = entries.next();
+            entries.remove();
+            size -= entry.getValue().size;
+            evictedImages.put(entry.getKey(), new SoftImage(entry.getKey(), entry.getValue(), evictedImagesQueue));
+            evictionCount += 1;
+        }
+    }
+
+    private void expungeEvictedImages() {
+        SoftImage softImage;
+        while ((softImage = (SoftImage) evictedImagesQueue.poll()) != null) {
+            if (evictedImages.get(softImage.key) == softImage) {
+                evictedImages.remove(softImage.key);
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum total size, in bytes, of the images this cache
+     * keeps.  The default is 16MB.
+     *
+     * @return the maximum size in bytes
+     * @see #setMaximumSize
+     */
+    public synchronized long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Sets the maximum total size, in bytes, of the images this cache keeps.
+     * If the cache is larger, the least recently used images are evicted.
+     *
+     * @param maximumSize the maximum size in bytes
+     * @see #getMaximumSize
+     */
+    public synchronized void setMaximumSize(long maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("negative maximumSize");
+        }
+        this.maximumSize = maximumSize;
+        trim();
+    }
+
+    /**
+     * Returns the estimated total size, in bytes, of the images this
+     * cache keeps.  Evicted images aren't included.
+     *
+     * @return the size of the cached images in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of images that were found in the cache.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of images that had to be loaded.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of images that were evicted to soft references
+     * to keep the cache within its maximum size.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns true if the Icon and ImageIcon resource converters defer
+     * decoding images until they're painted.
+     *
+     * @return true if icons are loaded lazily
+     * @see #setDeferredLoading
+     */
+    public synchronized boolean isDeferredLoading() {
+        return deferredLoading;
+    }
+
+    /**
+     * If true, the Icon and ImageIcon resource converters return icons
+     * whose images aren't decoded until they're painted, or until
+     * {@code getImage} is called.  The icon's size is read from the image
+     * file's header.  Images that are already cached, and images that
+     * ImageIO can't read, are loaded immediately.  Image resources are
+     * always loaded immediately.  The default is false.
+     *
+     * @param deferredLoading true if icons should be loaded lazily
+     * @see #setPrefetching
+     */
+    public synchronized void setDeferredLoading(boolean deferredLoading) {
+        this.deferredLoading = deferredLoading;
+    }
+
+    /**
+     * Returns true if deferred icons are decoded on a background thread.
+     *
+     * @return true if deferred icons are prefetched
+     * @see #setPrefetching
+     */
+    public synchronized boolean isPrefetching() {
+        return prefetching;
+    }
+
+    /**
+     * If true, the images of deferred icons are decoded on a background
+     * thread as soon as the icons are created, rather than when they're
+     * first painted.  The default is false.
+     *
+     * @param prefetching true if deferred icons should be prefetched
+     * @see #setDeferredLoading
+     */
+    public synchronized void setPrefetching(boolean prefetching) {
+        this.prefetching = prefetching;
+    }
+
+    /**
+     * Returns true if HiDPI variants of images are found and used.
+     *
+     * @return true if multi-resolution images are created
+     * @see #setMultiResolution
+     */
+    public synchronized boolean isMultiResolution() {
+        return multiResolution;
+    }
+
+    /**
+     * If true, the Icon, ImageIcon and Image resource converters look
+     * for HiDPI variants of each image, once per image, by inserting
+     * "@1.5x" and "@2x" before the image's file extension.  If any are
+     * found, the converters return a
+     * {@link java.awt.image.MultiResolutionImage MultiResolutionImage}
+     * whose variants are loaded, and cached, when they're first drawn.
+     * Variants are found without reading them, the size of an image
+     * is only read from its header if it has variants.
+     * The default is false.
+     *
+     * @param multiResolution true if HiDPI variants should be used
+     */
+    public synchronized void setMultiResolution(boolean multiResolution) {
+        this.multiResolution = multiResolution;
+    }
+
+    /**
+     * Removes all of the images from the cache.  The statistics aren't reset.
+     */
+    public synchronized void clear() {
+        images.clear();
+        evictedImages.clear();
+        imageSizes.clear();
+        variants.clear();
+        size = 0;
+    }
+}
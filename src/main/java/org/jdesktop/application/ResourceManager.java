@@ -7,13 +7,41 @@ package org.jdesktop.application;
 
 import org.jdesktop.application.utils.PlatformType;
 
+import java.awt.Component;
+import java.awt.Window;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.swing.SwingUtilities;
 
 /**
  * The application's {@code ResourceManager} provides 
@@ -66,10 +94,16 @@ public class ResourceManager extends AbstractBean {
 
     private static final String DEFAULT_RESOURCES_FOLDER = "resources";
 
-    private final Map<String, ResourceMap> resourceMaps;
+    private volatile ClassValue<ClassValue<ClassResourceMap>> classResourceMaps;  // stopClass => startClass => chain
+    private final Map<ResourceMap, Boolean> classResourceMapChains;  // weak, see allResourceMaps()
     private final ApplicationContext context;
     private List<String> applicationBundleNames = null;
-    private ResourceMap appResourceMap = null;
+    private volatile ResourceMap appResourceMap = null;
+    private ExecutorService preloadExecutor = null;  // see preload()
+    private volatile ResourceMapCache startupCache = null;  // see setStartupCacheEnabled()
+    private volatile boolean flattened = false;
+    private volatile ResourceBundleWatcher watcher = null;  // see setHotReloadEnabled()
+    private volatile boolean instrumentationEnabled = false;
     private String resourceFolder = DEFAULT_RESOURCES_FOLDER;
 
     /**
@@ -95,7 +129,8 @@ public class ResourceManager extends AbstractBean {
             throw new IllegalArgumentException("null context");
         }
         this.context = context;
-        resourceMaps = new ConcurrentHashMap<String, ResourceMap>();
+        classResourceMaps = newClassResourceMaps();
+        classResourceMapChains = new WeakHashMap<ResourceMap, Boolean>();
     }
 
     // FIXME - documentation
@@ -148,7 +183,19 @@ public class ResourceManager extends AbstractBean {
                 }
             }
             ResourceMap parent = createResourceMapChain(cl, root, names);
-            return createResourceMap(cl, parent, rmNames);
+            ResourceMap rm = createResourceMap(cl, parent, rmNames);
+            rm.setStartupCache(startupCache);
+            if (flattened) {
+                rm.setFlattened(true);
+            }
+            ResourceBundleWatcher watcher = this.watcher;
+            if (watcher != null) {
+                watcher.register(rm);
+            }
+            if (instrumentationEnabled) {
+                rm.setInstrumentation(new ResourceMapInstrumentation());
+            }
+            return rm;
         }
     }
 
@@ -159,33 +206,108 @@ public class ResourceManager extends AbstractBean {
      * Application.class.
      */
     private ResourceMap getApplicationResourceMap() {
-        if (appResourceMap == null) {
-            List<String> appBundleNames = getApplicationBundleNames();
-            Class appClass = getContext().getApplicationClass();
-            if (appClass == null) {
-                logger.warning("getApplicationResourceMap(): no Application class");
-                appClass = Application.class;
+        ResourceMap rm = appResourceMap;
+        if (rm == null) {
+            synchronized (this) {
+                rm = appResourceMap;
+                if (rm == null) {
+                    List<String> appBundleNames = getApplicationBundleNames();
+                    Class appClass = getContext().getApplicationClass();
+                    if (appClass == null) {
+                        logger.warning("getApplicationResourceMap(): no Application class");
+                        appClass = Application.class;
+                    }
+                    ClassLoader classLoader = appClass.getClassLoader();
+                    rm = createResourceMapChain(classLoader, null, appBundleNames.listIterator());
+                    appResourceMap = rm;
+                }
             }
-            ClassLoader classLoader = appClass.getClassLoader();
-            appResourceMap = createResourceMapChain(classLoader, null, appBundleNames.listIterator());
         }
-        return appResourceMap;
+        return rm;
+    }
+
+    /* The ResourceMap chain for the classes from startClass to stopClass.
+     * The chain is created once, when it's first needed, even if several
+     * threads (see preload) ask for it at the same time.  It's stored
+     * with startClass, so it doesn't refer to the ResourceManager, which
+     * would then live as long as the class does.
+     */
+    private static final class ClassResourceMap {
+
+        private final Class startClass;
+        private final Class stopClass;
+        private volatile ResourceMap resourceMap = null;
+
+        ClassResourceMap(Class startClass, Class stopClass) {
+            this.startClass = startClass;
+            this.stopClass = stopClass;
+        }
+
+        ResourceMap get(ResourceManager manager) {
+            ResourceMap rm = resourceMap;
+            if (rm == null) {
+                synchronized (this) {
+                    rm = resourceMap;
+                    if (rm == null) {
+                        List<String> classBundleNames = manager.allBundleNames(startClass, stopClass);
+                        ClassLoader classLoader = startClass.getClassLoader();
+                        ResourceMap appRM = manager.getResourceMap();
+                        rm = manager.createResourceMapChain(classLoader, appRM, classBundleNames.listIterator());
+                        synchronized (manager.classResourceMapChains) {
+                            manager.classResourceMapChains.put(rm, Boolean.TRUE);
+                        }
+                        resourceMap = rm;
+                    }
+                }
+            }
+            return rm;
+        }
+    }
+
+    /* Maps startClass to its ClassResourceMap, for one stopClass.
+     */
+    private static final class StartClassResourceMaps extends ClassValue<ClassResourceMap> {
+
+        private final Class<?> stopClass;
+
+        StartClassResourceMaps(Class<?> stopClass) {
+            this.stopClass = stopClass;
+        }
+
+        @Override
+        protected ClassResourceMap computeValue(Class<?> startClass) {
+            return new ClassResourceMap(startClass, stopClass);
+        }
+    }
+
+    /* Maps stopClass to its StartClassResourceMaps.
+     */
+    private static final class StopClassResourceMaps extends ClassValue<ClassValue<ClassResourceMap>> {
+
+        @Override
+        protected ClassValue<ClassResourceMap> computeValue(Class<?> stopClass) {
+            return new StartClassResourceMaps(stopClass);
+        }
+    }
+
+    /* Returns an empty cache of ResourceMap chains.  The chains are stored
+     * with the classes themselves, by ClassValues: the outer ClassValue maps
+     * stopClass to a ClassValue that maps startClass to its chain.  Looking
+     * up a chain doesn't allocate anything, and when a class is unloaded
+     * its chains go with it.  None of the values refer back to this
+     * ResourceManager, or to the outer ClassValue, so a ResourceManager
+     * that's discarded, or a cache that's replaced, isn't kept alive by
+     * the classes it has looked up.
+     */
+    private ClassValue<ClassValue<ClassResourceMap>> newClassResourceMaps() {
+        return new StopClassResourceMaps();
     }
 
     /* Lazily creates the ResourceMap chain for the the class from 
      * startClass to stopClass.
      */
     private ResourceMap getClassResourceMap(Class startClass, Class stopClass) {
-        String classResourceMapKey = startClass.getName() + stopClass.getName();
-        ResourceMap classResourceMap = resourceMaps.get(classResourceMapKey);
-        if (classResourceMap == null) {
-            List<String> classBundleNames = allBundleNames(startClass, stopClass);
-            ClassLoader classLoader = startClass.getClassLoader();
-            ResourceMap appRM = getResourceMap();
-            classResourceMap = createResourceMapChain(classLoader, appRM, classBundleNames.listIterator());
-            resourceMaps.put(classResourceMapKey, classResourceMap);
-        }
-        return classResourceMap;
+        return classResourceMaps.get(stopClass).get(startClass).get(this);
     }
 
     /**
@@ -290,6 +412,76 @@ public class ResourceManager extends AbstractBean {
         return getResourceMap(cls, cls);
     }
 
+    /**
+     * Creates the {@link #getResourceMap(Class) ResourceMaps} for the
+     * specified classes on background threads, and loads their
+     * ResourceBundles, so that the first use of each class's resources,
+     * e.g. when a dialog is first shown, doesn't stall the event
+     * dispatching thread.  Expressions are evaluated and icon
+     * resources are converted too.  The ResourceMaps are the same ones
+     * {@code getResourceMap} returns; it's safe to use them while
+     * they're being preloaded.
+     * <p>
+     * Errors are logged, they're reported again when the resources
+     * are looked up.  If an application lists classes in its
+     * {@code Application.preload} resource, they're preloaded
+     * automatically while {@link Application#startup} runs.
+     *
+     * @param classes the classes whose ResourceMaps should be loaded
+     * @return a Future that's done when all of the ResourceMaps have been loaded
+     * @see #getResourceMap(Class)
+     */
+    public Future<?> preload(Collection<? extends Class<?>> classes) {
+        if (classes == null) {
+            throw new IllegalArgumentException("null classes");
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>(classes.size());
+        for (final Class<?> cls : classes) {
+            if (cls == null) {
+                throw new IllegalArgumentException("null class");
+            }
+            Runnable preloadClass = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        getResourceMap(cls).preload();
+                    } catch (RuntimeException e) {
+                        String msg = String.format("couldn't preload the resources for %s", cls);
+                        logger.log(Level.WARNING, msg, e);
+                    }
+                }
+            };
+            futures.add(CompletableFuture.runAsync(preloadClass, getPreloadExecutor()));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
+    }
+
+    /* Lazily creates the pool of daemon threads used by preload().
+     * Idle threads exit after a few seconds.
+     */
+    private synchronized ExecutorService getPreloadExecutor() {
+        if (preloadExecutor == null) {
+            ThreadFactory threadFactory = new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ResourceManager preload " + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+            int nThreads = Runtime.getRuntime().availableProcessors();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    nThreads, nThreads,
+                    5L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), threadFactory);
+            executor.allowCoreThreadTimeOut(true);
+            preloadExecutor = executor;
+        }
+        return preloadExecutor;
+    }
+
     /**
      * Returns the chain of ResourceMaps that's shared by the entire application,
      * beginning with the resources defined for the application's class, i.e.
@@ -375,7 +567,10 @@ public class ResourceManager extends AbstractBean {
         } else {
             applicationBundleNames = null;
         }
-        resourceMaps.clear();
+        classResourceMaps = newClassResourceMaps();
+        synchronized (classResourceMapChains) {
+            classResourceMapChains.clear();
+        }
         firePropertyChange("applicationBundleNames", oldValue, applicationBundleNames);
     }
 
@@ -509,6 +704,624 @@ public class ResourceManager extends AbstractBean {
         getResourceMap().setPlatform(platform);
     }
 
+    /**
+     * Returns the locale of the ResourceBundles that ResourceMaps load,
+     * i.e. {@link Locale#getDefault()}.
+     *
+     * @return the default locale
+     * @see #setLocale
+     */
+    public Locale getLocale() {
+        return Locale.getDefault();
+    }
+
+    /**
+     * Switches the running application to another locale.  The
+     * default locale is changed and all of the ResourceMaps this
+     * ResourceManager has created reload their ResourceBundles, on a
+     * background thread.  Then the component hierarchies that were
+     * injected with {@link ResourceMap#injectComponents} are injected
+     * again, on the event dispatching thread, in one pass.  Only the
+     * properties whose resource values actually changed are set, and
+     * each window is revalidated and repainted once.
+     * <p>
+     * Injection errors are logged.  A "locale" PropertyChangeEvent is
+     * fired when the hierarchies have been updated.
+     *
+     * @param locale the new locale
+     * @return a Future that's done when the components have been updated
+     * @see #getLocale
+     * @see Locale#setDefault(Locale)
+     */
+    public Future<?> setLocale(final Locale locale) {
+        if (locale == null) {
+            throw new IllegalArgumentException("null locale");
+        }
+        final Locale oldValue = Locale.getDefault();
+        Runnable update = new Runnable() {
+            @Override
+            public void run() {
+                Locale.setDefault(locale);
+            }
+        };
+        Runnable done = new Runnable() {
+            @Override
+            public void run() {
+                firePropertyChange("locale", oldValue, locale);
+            }
+        };
+        return updateComponents(allResourceMaps(), update, Collections.<String>emptySet()).thenRun(done);
+    }
+
+    /* Runs update on a background thread, then reloads rms and re-injects
+     * the components that were injected by them, with the resources whose
+     * values changed.  Resources whose values name one of changedFiles,
+     * like "myIcon.png", are injected too.  Components are injected on the
+     * event dispatching thread, in one pass; each window is revalidated
+     * and repainted once.  Used by setLocale() and hot reloading.
+     */
+    private CompletableFuture<Void> updateComponents(final Set<ResourceMap> rms, final Runnable update, final Set<String> changedFiles) {
+        final Map<ResourceMap, Set<String>> changedKeys = new IdentityHashMap<ResourceMap, Set<String>>();
+        Runnable reload = new Runnable() {
+            @Override
+            public void run() {
+                Map<ResourceMap, Map<String, Object>> oldValues = new IdentityHashMap<ResourceMap, Map<String, Object>>();
+                for (ResourceMap rm : rms) {
+                    if (!rm.getInjectedRoots().isEmpty()) {
+                        oldValues.put(rm, rm.getComponentValues());
+                    }
+                }
+                update.run();
+                for (ResourceMap rm : rms) {
+                    rm.keySet();  // reloads the ResourceBundles
+                }
+                for (Map.Entry<ResourceMap, Map<String, Object>> entry : oldValues.entrySet()) {
+                    Map<String, Object> newValues = entry.getKey().getComponentValues();
+                    Set<String> keys = new HashSet<String>(newValues.keySet());
+                    keys.addAll(entry.getValue().keySet());
+                    for (Iterator<String> i = keys.iterator(); i.hasNext();) {
+                        String key = i.next();
+                        Object value = newValues.get(key);
+                        if (Objects.equals(value, entry.getValue().get(key)) && !namesFile(value, changedFiles)) {
+                            i.remove();
+                        }
+                    }
+                    if (!keys.isEmpty()) {
+                        changedKeys.put(entry.getKey(), keys);
+                    }
+                }
+            }
+        };
+        Runnable reinject = new Runnable() {
+            @Override
+            public void run() {
+                List<Component> injected = new ArrayList<Component>();
+                for (Map.Entry<ResourceMap, Set<String>> entry : changedKeys.entrySet()) {
+                    ResourceMap rm = entry.getKey();
+                    for (Component root : rm.getInjectedRoots()) {
+                        try {
+                            rm.injectComponentTree(root, entry.getValue(), injected);
+                        } catch (RuntimeException e) {
+                            String msg = String.format("couldn't inject %s again", root);
+                            logger.log(Level.WARNING, msg, e);
+                        }
+                    }
+                }
+                Set<Component> windows = Collections.newSetFromMap(new IdentityHashMap<Component, Boolean>());
+                for (Component c : injected) {
+                    // the window, or the top of a hierarchy that hasn't been added to one yet
+                    while (!(c instanceof Window) && (c.getParent() != null)) {
+                        c = c.getParent();
+                    }
+                    windows.add(c);
+                }
+                for (Component window : windows) {
+                    window.revalidate();
+                    window.repaint();
+                }
+            }
+        };
+        Executor edt = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                SwingUtilities.invokeLater(command);
+            }
+        };
+        return CompletableFuture.runAsync(reload, getPreloadExecutor()).thenRunAsync(reinject, edt);
+    }
+
+    private static boolean namesFile(Object value, Set<String> fileNames) {
+        if (value instanceof String) {
+            for (String fileName : fileNames) {
+                if (((String) value).endsWith(fileName)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if changes to the ResourceBundle files of this
+     * ResourceManager's ResourceMaps are loaded while the application
+     * is running.
+     *
+     * @return true if hot reloading is enabled
+     * @see #setHotReloadEnabled
+     */
+    public boolean isHotReloadEnabled() {
+        return watcher != null;
+    }
+
+    /**
+     * Enables a development mode in which ResourceBundles are reloaded
+     * when their files change, so that resources like colors, fonts and
+     * insets can be tuned without restarting the application.  The
+     * resources directories of the ResourceMaps this ResourceManager
+     * creates are watched, if they're directories on the class path rather
+     * than entries in a jar.  Resources edited in a source directory are
+     * picked up when the IDE or the build copies them to the class path.
+     * <p>
+     * Changes are coalesced: once no file has changed for a moment, the
+     * ResourceMaps whose bundles changed, and the ResourceMaps that are
+     * their children, are reloaded.  Then the components injected by
+     * those ResourceMaps are injected again, like they are after
+     * {@link #setLocale setLocale}, with just the resources whose values
+     * changed.  If an image changes, the {@link ResourceImageCache} is
+     * cleared and the resources that name the image are injected again.
+     * Bundles that are read from a {@link ResourceBundleIndex} are only
+     * reloaded when the index is rebuilt.
+     * <p>
+     * Hot reloading isn't intended for production use.  The default is false.
+     *
+     * @param hotReloadEnabled true if changed ResourceBundles should be reloaded
+     * @see #isHotReloadEnabled
+     */
+    public void setHotReloadEnabled(boolean hotReloadEnabled) {
+        boolean oldValue;
+        synchronized (this) {
+            oldValue = isHotReloadEnabled();
+            if (hotReloadEnabled == oldValue) {
+                return;
+            }
+            if (hotReloadEnabled) {
+                ResourceBundleWatcher.Listener listener = new ResourceBundleWatcher.Listener() {
+                    @Override
+                    public void filesChanged(Map<Path, Set<String>> changes) {
+                        reloadChangedResources(changes);
+                    }
+                };
+                try {
+                    watcher = new ResourceBundleWatcher(listener);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "can't watch ResourceBundle files", e);
+                    return;
+                }
+                for (ResourceMap rm : allResourceMaps()) {
+                    watcher.register(rm);
+                }
+            } else {
+                watcher.close();
+                watcher = null;
+            }
+        }
+        firePropertyChange("hotReloadEnabled", oldValue, hotReloadEnabled);
+    }
+
+    /* Reloads the ResourceMaps whose files changed, and their children,
+     * and injects their components again.  Called by the watcher thread.
+     */
+    private void reloadChangedResources(Map<Path, Set<String>> changes) {
+        ResourceBundleWatcher watcher = this.watcher;
+        if (watcher == null) {
+            return;
+        }
+        final Set<ResourceMap> changedRMs = Collections.newSetFromMap(new IdentityHashMap<ResourceMap, Boolean>());
+        Set<String> changedFiles = new HashSet<String>();
+        boolean imagesChanged = false;
+        for (Map.Entry<Path, Set<String>> entry : changes.entrySet()) {
+            for (ResourceMap rm : watcher.getResourceMaps(entry.getKey())) {
+                ResourceBundle.clearCache(rm.getClassLoader());
+                ResourceBundleIndex.clearCaches(rm.getClassLoader());
+                if (entry.getValue() == null) {
+                    changedRMs.add(rm);
+                    imagesChanged = true;
+                    continue;
+                }
+                for (String fileName : entry.getValue()) {
+                    if (!fileName.endsWith(".properties")) {
+                        // an image, or an index
+                        changedRMs.add(rm);
+                        changedFiles.add(fileName);
+                        imagesChanged |= !fileName.equals(ResourceBundleIndex.INDEX_FILE_NAME);
+                    } else if (isBundleFile(rm, fileName.substring(0, fileName.length() - ".properties".length()))) {
+                        changedRMs.add(rm);
+                    }
+                }
+            }
+        }
+        if (changedRMs.isEmpty()) {
+            return;
+        }
+        if (imagesChanged) {
+            ResourceImageCache.getInstance().clear();
+        }
+        /* the children of changed ResourceMaps inherit their resources,
+         * their key sets are recomputed once the parents are reloaded
+         */
+        Set<ResourceMap> rms = Collections.newSetFromMap(new IdentityHashMap<ResourceMap, Boolean>());
+        for (ResourceMap rm : allResourceMaps()) {
+            for (ResourceMap p = rm; p != null; p = p.getParent()) {
+                if (changedRMs.contains(p)) {
+                    rms.add(rm);
+                    break;
+                }
+            }
+        }
+        Runnable update = new Runnable() {
+            @Override
+            public void run() {
+                for (ResourceMap rm : changedRMs) {
+                    rm.reloadBundles();
+                }
+            }
+        };
+        logger.fine(String.format("reloading %d ResourceMaps, files changed: %s", rms.size(), changes));
+        updateComponents(rms, update, changedFiles);
+    }
+
+    /* Returns true if the bundle file, like "MyApp_de" or "MyApp_osx",
+     * is one of rm's bundles.
+     */
+    private static boolean isBundleFile(ResourceMap rm, String bundleFileName) {
+        for (String bundleName : rm.getBundleNames()) {
+            String simpleName = bundleName.substring(bundleName.lastIndexOf('.') + 1);
+            if (bundleFileName.equals(simpleName) || bundleFileName.startsWith(simpleName + "_")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the ResourceMaps created by this ResourceManager
+     * are {@link ResourceMap#setFlattened flattened}.
+     *
+     * @return true if ResourceMap chains are flattened
+     * @see #setFlattened
+     */
+    public boolean isFlattened() {
+        return flattened;
+    }
+
+    /**
+     * Flattens, or stops flattening, the ResourceMaps this ResourceManager
+     * has created and the ones it creates later.  Lookups in a flattened
+     * ResourceMap don't walk its parent chain, see
+     * {@link ResourceMap#setFlattened ResourceMap.setFlattened}.
+     * The default is false.
+     *
+     * @param flattened true if ResourceMap chains should be flattened
+     * @see #isFlattened
+     */
+    public void setFlattened(boolean flattened) {
+        boolean oldValue;
+        synchronized (this) {
+            oldValue = this.flattened;
+            this.flattened = flattened;
+            for (ResourceMap rm : allResourceMaps()) {
+                rm.setFlattened(flattened);
+            }
+        }
+        firePropertyChange("flattened", oldValue, flattened);
+    }
+
+    /**
+     * Returns true if the ResourceBundles of this ResourceManager's
+     * ResourceMaps are restored from a snapshot saved by the previous run.
+     *
+     * @return true if the startup cache is enabled
+     * @see #setStartupCacheEnabled
+     */
+    public boolean isStartupCacheEnabled() {
+        return startupCache != null;
+    }
+
+    /**
+     * Enables a persistent cache of the ResourceBundles loaded by this
+     * ResourceManager's ResourceMaps, for faster startup.  When the cache
+     * is enabled, the snapshot written by {@link #saveStartupCache} is
+     * read from {@link ApplicationContext#getLocalStorage LocalStorage},
+     * and ResourceMaps that haven't loaded their ResourceBundles yet
+     * copy them from the snapshot instead.  ResourceMaps that have
+     * already loaded them, like the application's own ResourceMaps,
+     * which locate LocalStorage, switch to the snapshot's copy unless
+     * they've been changed with {@code putResource}.  There's one snapshot per
+     * locale and {@link #getPlatform platform}; it's ignored if the
+     * class path, or any of the files the snapshot's bundles were loaded
+     * from, has changed since it was saved.
+     * <p>
+     * The Application enables the cache if its {@code Application.startupCache}
+     * resource is true, and saves the snapshot when it exits.
+     *
+     * @param startupCacheEnabled true if the startup cache should be used
+     * @see #isStartupCacheEnabled
+     */
+    public void setStartupCacheEnabled(boolean startupCacheEnabled) {
+        boolean oldValue;
+        synchronized (this) {
+            oldValue = isStartupCacheEnabled();
+            if (startupCacheEnabled == oldValue) {
+                return;
+            }
+            ResourceMapCache cache = null;
+            if (startupCacheEnabled) {
+                Locale locale = Locale.getDefault();
+                PlatformType platform = getPlatform();
+                cache = readStartupCache(locale, platform);
+                if (cache == null) {
+                    cache = new ResourceMapCache(locale, platform);
+                }
+            }
+            startupCache = cache;
+            for (ResourceMap rm : allResourceMaps()) {
+                rm.setStartupCache(cache);
+            }
+        }
+        firePropertyChange("startupCacheEnabled", oldValue, startupCacheEnabled);
+    }
+
+    private ResourceMapCache readStartupCache(Locale locale, PlatformType platform) {
+        String fileName = ResourceMapCache.fileName(locale, platform);
+        byte[] bytes;
+        try (InputStream in = getContext().getLocalStorage().openInputFile(fileName)) {
+            bytes = in.readAllBytes();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "no ResourceMap startup cache " + fileName, e);
+            return null;
+        }
+        try {
+            ResourceMapCache cache = ResourceMapCache.read(bytes, locale, platform);
+            if (cache == null) {
+                logger.fine("ResourceMap startup cache " + fileName + " is out of date");
+            }
+            return cache;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "couldn't read ResourceMap startup cache " + fileName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Saves the ResourceBundles loaded so far by this ResourceManager's
+     * ResourceMaps, for the current locale and platform, in the snapshot
+     * that {@link #setStartupCacheEnabled enabling} the startup cache
+     * reads.  ResourceMaps whose resources have been changed with
+     * {@code putResource}, that contain resources which aren't
+     * Strings, or whose class loader can't be identified in the next run,
+     * aren't saved.  The snapshot's bundles that haven't been
+     * loaded during this run are saved again.
+     *
+     * @throws IOException if the snapshot can't be written
+     * @throws IllegalStateException if the startup cache isn't enabled
+     * @see #setStartupCacheEnabled
+     */
+    public void saveStartupCache() throws IOException {
+        ResourceMapCache oldCache = startupCache;
+        if (oldCache == null) {
+            throw new IllegalStateException("startup cache isn't enabled");
+        }
+        Locale locale = Locale.getDefault();
+        PlatformType platform = getPlatform();
+        ResourceMapCache cache = new ResourceMapCache(locale, platform);
+        if (oldCache.getLocale().equals(locale) && (oldCache.getPlatform() == platform)) {
+            cache = oldCache;
+        }
+        for (ResourceMap rm : allResourceMaps()) {
+            Map<String, String> entries = rm.getStartupCacheEntries(locale, platform);
+            if (entries != null) {
+                cache.putBundlesMap(rm.getClassLoader(), rm.getResourcesDir(), rm.getBundleNames(), entries);
+            }
+        }
+        String fileName = ResourceMapCache.fileName(locale, platform);
+        try (OutputStream out = getContext().getLocalStorage().openOutputFile(fileName)) {
+            cache.write(out);
+        }
+        logger.fine(String.format("saved %d ResourceMaps in %s", cache.size(), fileName));
+    }
+
+    /**
+     * Returns true if resource lookups and conversions are counted.
+     *
+     * @return true if instrumentation is enabled
+     * @see #setInstrumentationEnabled
+     */
+    public boolean isInstrumentationEnabled() {
+        return instrumentationEnabled;
+    }
+
+    /**
+     * Enables counters, for each of the ResourceMaps this ResourceManager
+     * creates, of resource lookups and the parent ResourceMaps they
+     * traverse, of String conversions, by converter, and the time they
+     * take, and of decoded images.  The names of the resources that are read are
+     * recorded too, so that the resources an application never uses
+     * can be {@link ResourceMapStatistics#getUnusedKeys reported}.
+     * The counters are read with {@link #getStatistics}, or through JMX,
+     * see {@link #registerMXBean}.
+     * <p>
+     * Disabling instrumentation discards the counters.  A ResourceMap
+     * that isn't instrumented only checks that it isn't.  The default
+     * is false.
+     *
+     * @param instrumentationEnabled true if resource lookups should be counted
+     * @see #isInstrumentationEnabled
+     */
+    public void setInstrumentationEnabled(boolean instrumentationEnabled) {
+        boolean oldValue;
+        synchronized (this) {
+            oldValue = this.instrumentationEnabled;
+            if (instrumentationEnabled == oldValue) {
+                return;
+            }
+            this.instrumentationEnabled = instrumentationEnabled;
+            for (ResourceMap rm : allResourceMaps()) {
+                rm.setInstrumentation(instrumentationEnabled ? new ResourceMapInstrumentation() : null);
+            }
+        }
+        firePropertyChange("instrumentationEnabled", oldValue, instrumentationEnabled);
+    }
+
+    /**
+     * Returns a snapshot of the instrumentation counters of each of
+     * the ResourceMaps this ResourceManager has created.  If
+     * instrumentation isn't enabled, the list is empty.
+     *
+     * @return the counters of each ResourceMap
+     * @see #setInstrumentationEnabled
+     */
+    public List<ResourceMapStatistics> getStatistics() {
+        List<ResourceMapStatistics> statistics = new ArrayList<ResourceMapStatistics>();
+        for (ResourceMap rm : allResourceMaps()) {
+            ResourceMapStatistics rmStatistics = rm.getStatistics();
+            if (rmStatistics != null) {
+                statistics.add(rmStatistics);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Resets the instrumentation counters of all of the ResourceMaps,
+     * if instrumentation is enabled.
+     *
+     * @see #setInstrumentationEnabled
+     */
+    public synchronized void resetStatistics() {
+        if (instrumentationEnabled) {
+            for (ResourceMap rm : allResourceMaps()) {
+                rm.setInstrumentation(new ResourceMapInstrumentation());
+            }
+        }
+    }
+
+    /**
+     * Registers a {@link ResourceManagerMXBean} for this ResourceManager
+     * with the platform MBeanServer, so that its instrumentation can be
+     * enabled and read with a JMX console like JConsole.  The MXBean is
+     * named {@code org.jdesktop.application:type=ResourceManager}.
+     *
+     * @return the name of the MXBean
+     * @throws JMException if the MXBean can't be registered, e.g. because
+     *     another ResourceManager's MXBean already has the same name
+     * @see #setInstrumentationEnabled
+     */
+    public ObjectName registerMXBean() throws JMException {
+        ObjectName name = new ObjectName("org.jdesktop.application", "type", "ResourceManager");
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), name);
+        return name;
+    }
+
+    private final class MXBean implements ResourceManagerMXBean {
+
+        @Override
+        public boolean isInstrumentationEnabled() {
+            return ResourceManager.this.isInstrumentationEnabled();
+        }
+
+        @Override
+        public void setInstrumentationEnabled(boolean instrumentationEnabled) {
+            ResourceManager.this.setInstrumentationEnabled(instrumentationEnabled);
+        }
+
+        @Override
+        public List<ResourceMapStatistics> getStatistics() {
+            return ResourceManager.this.getStatistics();
+        }
+
+        @Override
+        public long getLookupCount() {
+            long n = 0;
+            for (ResourceMapStatistics statistics : getStatistics()) {
+                n += statistics.getLookupCount();
+            }
+            return n;
+        }
+
+        @Override
+        public long getHitCount() {
+            long n = 0;
+            for (ResourceMapStatistics statistics : getStatistics()) {
+                n += statistics.getHitCount();
+            }
+            return n;
+        }
+
+        @Override
+        public long getIconBytesDecoded() {
+            long n = 0;
+            for (ResourceMapStatistics statistics : getStatistics()) {
+                n += statistics.getIconBytesDecoded();
+            }
+            return n;
+        }
+
+        @Override
+        public long getComponentsVisited() {
+            long n = 0;
+            for (ResourceMapStatistics statistics : getStatistics()) {
+                n += statistics.getComponentsVisited();
+            }
+            return n;
+        }
+
+        @Override
+        public long getComponentsInjected() {
+            long n = 0;
+            for (ResourceMapStatistics statistics : getStatistics()) {
+                n += statistics.getComponentsInjected();
+            }
+            return n;
+        }
+
+        @Override
+        public String unusedKeysReport() {
+            StringBuilder report = new StringBuilder();
+            for (ResourceMapStatistics statistics : getStatistics()) {
+                if (!statistics.getUnusedKeys().isEmpty()) {
+                    report.append(statistics.getBundleNames()).append('\n');
+                    for (String key : statistics.getUnusedKeys()) {
+                        report.append("    ").append(key).append('\n');
+                    }
+                }
+            }
+            return report.toString();
+        }
+
+        @Override
+        public void resetStatistics() {
+            ResourceManager.this.resetStatistics();
+        }
+    }
+
+    /* Returns every ResourceMap this ResourceManager has created so far,
+     * except for the chains of classes that have been unloaded.
+     */
+    private Set<ResourceMap> allResourceMaps() {
+        Set<ResourceMap> rms = Collections.newSetFromMap(new IdentityHashMap<ResourceMap, Boolean>());
+        List<ResourceMap> chains;
+        synchronized (classResourceMapChains) {
+            chains = new ArrayList<ResourceMap>(classResourceMapChains.keySet());
+        }
+        chains.add(appResourceMap);
+        for (ResourceMap rm : chains) {
+            while ((rm != null) && rms.add(rm)) {
+                rm = rm.getParent();
+            }
+        }
+        return rms;
+    }
+
     /**
      * Returns resources subpackage name
      * @return resource folder name
@@ -0,0 +1,76 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import java.util.List;
+
+/**
+ * The management interface of a {@link ResourceManager}'s resource
+ * instrumentation, registered with {@link ResourceManager#registerMXBean}.
+ *
+ * @see ResourceManager#setInstrumentationEnabled
+ */
+public interface ResourceManagerMXBean {
+
+    /**
+     * @return true if resource lookups are being counted
+     * @see ResourceManager#isInstrumentationEnabled
+     */
+    boolean isInstrumentationEnabled();
+
+    /**
+     * @param instrumentationEnabled true if resource lookups should be counted
+     * @see ResourceManager#setInstrumentationEnabled
+     */
+    void setInstrumentationEnabled(boolean instrumentationEnabled);
+
+    /**
+     * @return a snapshot of the counters of each ResourceMap
+     * @see ResourceManager#getStatistics
+     */
+    List<ResourceMapStatistics> getStatistics();
+
+    /**
+     * @return the total number of lookups
+     */
+    long getLookupCount();
+
+    /**
+     * @return the total number of lookups that found a resource
+     */
+    long getHitCount();
+
+    /**
+     * @return the total size of the decoded images
+     */
+    long getIconBytesDecoded();
+
+    /**
+     * @return the total number of components visited by injection
+     * @see ResourceMapStatistics#getComponentsVisited
+     */
+    long getComponentsVisited();
+
+    /**
+     * @return the total number of visited components whose properties were set
+     * @see ResourceMapStatistics#getComponentsInjected
+     */
+    long getComponentsInjected();
+
+    /**
+     * Returns a report of the resources that haven't been read, one
+     * line per resource, grouped by ResourceMap.
+     *
+     * @return the unused keys report
+     * @see ResourceMapStatistics#getUnusedKeys
+     */
+    String unusedKeysReport();
+
+    /**
+     * Resets all of the counters.
+     *
+     * @see ResourceManager#resetStatistics
+     */
+    void resetStatistics();
+}
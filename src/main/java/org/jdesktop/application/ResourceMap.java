@@ -19,35 +19,53 @@ import java.awt.Insets;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.Toolkit;
-import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.text.MessageFormat;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.MissingResourceException;
+import java.util.NoSuchElementException;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import javax.swing.AbstractButton;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
-import javax.swing.JLabel;
+import javax.swing.JComponent;
 import javax.swing.JMenu;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.border.EmptyBorder;
 
 /**
@@ -96,16 +114,66 @@ public class ResourceMap {
     
     public static final String KEY_PLATFORM = "platform";
 
+    /**
+     * The name of a client property that prunes a component's children
+     * from {@link #injectComponents}.  If a JComponent's value of this
+     * property is {@code Boolean.FALSE}, the component itself is
+     * injected but its children aren't visited.  It's intended for large
+     * subtrees that don't contain any named components, like third
+     * party charts, or tables, lists and trees whose renderers, the
+     * children of their {@code CellRendererPane}, aren't named.
+     * <pre>
+     * chartPanel.putClientProperty(ResourceMap.INJECT_CHILDREN_PROPERTY, Boolean.FALSE);
+     * </pre>
+     */
+    public static final String INJECT_CHILDREN_PROPERTY = "ResourceMap.injectChildren";
+
     private final static Object NULL_RESOURCE = "null resource";
+    private final static Object NO_RESOURCE_MAP = "no resource map";
+    private final static Component[] NO_COMPONENTS = new Component[0];
+    /* Incremented when the keys defined by any ResourceMap change,
+     * which invalidates every ResourceMap's KeyResolutions cache, and
+     * the KeyIndexes derived from keySet(), which includes the parents'
+     * keys.
+     */
+    private final static AtomicInteger keysGeneration = new AtomicInteger();
+    private static ExecutorService injectionExecutor = null;  // see injectComponentsInBackground()
+    /* True for ResourceMap subclasses that override the protected
+     * containsResourceKey(), getResource() or putResource() methods.
+     */
+    private final static ClassValue<Boolean> overridesResourceStorage = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Class<?> c = type; c != ResourceMap.class; c = c.getSuperclass()) {
+                for (Method m : c.getDeclaredMethods()) {
+                    String name = m.getName();
+                    Class<?>[] types = m.getParameterTypes();
+                    if (("containsResourceKey".equals(name) || "getResource".equals(name))
+                            && (types.length == 1) && (types[0] == String.class)) {
+                        return Boolean.TRUE;
+                    } else if ("putResource".equals(name)
+                            && (types.length == 2) && (types[0] == String.class) && (types[1] == Object.class)) {
+                        return Boolean.TRUE;
+                    }
+                }
+            }
+            return Boolean.FALSE;
+        }
+    };
     private final ClassLoader classLoader;
     private final ResourceMap parent;
     private final List<String> bundleNames;
     private final String resourcesDir;
-    private Map<String, Object> bundlesMapP = null; // see getBundlesMap()
-    private Locale locale = Locale.getDefault();    // ...
-    private Set<String> bundlesMapKeysP = null;     // set getBundlesMapKeys()
-    private boolean bundlesLoaded = false;  // ResourceBundles are loaded lazily
-    private PlatformType platform;
+    private volatile Bundles bundlesP = null;  // see getBundles()
+    private volatile PlatformType platform;
+    private final boolean defaultResourceStorage;
+    private final boolean cacheKeyResolutions;
+    private volatile KeyResolutions keyResolutionsP = null;  // see resolveKey()
+    private volatile ResourceMapCache startupCache = null;  // see setStartupCache()
+    private volatile boolean flattened = false;
+    private volatile FlatChain flatChainP = null;  // see getFlatChain()
+    private final Map<Component, Boolean> injectedRoots = new WeakHashMap<Component, Boolean>();  // see injectComponents()
+    private volatile ResourceMapInstrumentation instrumentation = null;  // see setInstrumentation()
 
     /**
      * Creates a ResourceMap that contains all of the resources 
@@ -174,6 +242,8 @@ public class ResourceMap {
         this.classLoader = classLoader;
         this.bundleNames = Collections.unmodifiableList(new ArrayList<String>(bundleNames));
         this.resourcesDir = bpn.replace(".", "/") + "/";
+        this.defaultResourceStorage = !overridesResourceStorage.get(getClass());
+        this.cacheKeyResolutions = defaultResourceStorage && ((parent == null) || parent.cacheKeyResolutions);
     }
 
     private String bundlePackageName(String bundleName) {
@@ -204,6 +274,42 @@ public class ResourceMap {
         return parent;
     }
 
+    /**
+     * Returns true if lookups use a flattened view of this ResourceMap
+     * and its parents.
+     *
+     * @return true if the parent chain is flattened
+     * @see #setFlattened
+     */
+    public boolean isFlattened() {
+        return flattened;
+    }
+
+    /**
+     * If true, the keys of this ResourceMap and all of its parents are
+     * merged into a read-only map, from each key to the ResourceMap that
+     * defines it, with shadowing already resolved.  Lookups don't walk the
+     * parent chain and {@link #keySet} is a view of the merged map, rather
+     * than a copy of the keys of each ResourceMap in the chain.  The
+     * ResourceMaps of a chain share the merged map of one of their parents,
+     * and each one only adds the keys defined below that parent, unless
+     * there are more of those.  The merged map is built on the first lookup,
+     * and built again after the keys of any ResourceMap have changed.
+     * Flattening is ignored if this
+     * ResourceMap, or one of its parents, overrides the protected
+     * resource storage methods.  The default is false.
+     * <p>
+     * Flattening pays off for the long chains that
+     * {@link ResourceManager#getResourceMap(Class)} creates for deep class
+     * hierarchies.  See {@link ResourceManager#setFlattened}.
+     *
+     * @param flattened true if the parent chain should be flattened
+     */
+    public void setFlattened(boolean flattened) {
+        this.flattened = flattened;
+        flatChainP = null;
+    }
+
     /** 
      * Returns the names of the ResourceBundles that define the 
      * resources contained by this ResourceMap.
@@ -240,32 +346,172 @@ public class ResourceMap {
         return resourcesDir;
     }
 
-    /* Lazily flattens all of the ResourceBundles named in bundleNames
-     * into a single Map - bundlesMapP.  The bundleNames list is in
-     * priority order, the first entry shadows later entries.
-     */
-    private synchronized Map<String, Object> getBundlesMap() {
-        // If the default locale has changed, then reload
-        Locale defaultLocale = Locale.getDefault();
-        if (locale != defaultLocale) {
-            bundlesLoaded = false;
-            locale = defaultLocale;
-        }
-        if (!bundlesLoaded) {
-            String resourceSuffix = getPlatform().getResourceSuffix();
-            Map<String, Object> bundlesMap = new ConcurrentHashMap<String, Object>();
-            for (int i = bundleNames.size() - 1; i >= 0; i--) {
-                populateResourceMap(bundleNames.get(i), bundlesMap);
-                if (!resourceSuffix.isEmpty())
-                    populateResourceMap(bundleNames.get(i)+"_"+resourceSuffix, bundlesMap);
+    /* An immutable snapshot of the ResourceBundles named in bundleNames,
+     * flattened for one locale and platform, and of the indices derived
+     * from its keys.  Snapshots are published with the volatile bundlesP
+     * field, so lookups don't lock.  The values in the map can be replaced
+     * with putResource(), the set of keys is fixed.  The key set and the
+     * indices, see KeyIndexes, are computed lazily; threads that race to
+     * compute one of them compute the same value.
+     */
+    private static final class Bundles {
+
+        private final Locale locale;
+        private final PlatformType platform;
+        private final Map<String, Object> map;
+        private volatile KeyIndexes keyIndexes = null;  // see getKeyIndexes()
+        private final Map<String, Conversions> conversions = new ConcurrentHashMap<String, Conversions>();
+        private final Map<String, Set<Conversions>> dependents = new ConcurrentHashMap<String, Set<Conversions>>();
+        private final Map<String, ResourceFormat> formats = new ConcurrentHashMap<String, ResourceFormat>();  // see getFormat()
+        private final Map<String, CachedMessageFormat> messageFormats = new ConcurrentHashMap<String, CachedMessageFormat>();  // see formatMessage()
+        private volatile boolean modified = false;  // see putResource()
+
+        Bundles(Locale locale, PlatformType platform, Map<String, Object> map) {
+            this.locale = locale;
+            this.platform = platform;
+            this.map = map;
+        }
+    }
+
+    /* Returns the current Bundles snapshot.  If the default locale
+     * or the platform has changed, the bundles are reloaded first.
+     */
+    private Bundles getBundles() {
+        Bundles bundles = bundlesP;
+        if ((bundles == null) || (bundles.locale != Locale.getDefault()) || (bundles.platform != getPlatform())) {
+            bundles = loadBundles();
+        }
+        return bundles;
+    }
+
+    /* Flattens all of the ResourceBundles named in bundleNames into
+     * a new Bundles snapshot.  The bundleNames list is in priority order,
+     * the first entry shadows later entries.  Threads that find a stale
+     * snapshot at the same time wait here for one of them to load it.
+     */
+    private synchronized Bundles loadBundles() {
+        Locale locale = Locale.getDefault();
+        PlatformType platform = getPlatform();
+        Bundles bundles = bundlesP;
+        if ((bundles == null) || (bundles.locale != locale) || (bundles.platform != platform)) {
+            ResourceMapCache cache = startupCache;
+            Map<String, Object> bundlesMap = (cache == null) ? null : cache.getBundlesMap(classLoader, bundleNames, locale, platform);
+            if (bundlesMap == null) {
+                String resourceSuffix = platform.getResourceSuffix();
+                bundlesMap = new HashMap<String, Object>();
+                for (int i = bundleNames.size() - 1; i >= 0; i--) {
+                    populateResourceMap(bundleNames.get(i), locale, bundlesMap);
+                    if (!resourceSuffix.isEmpty())
+                        populateResourceMap(bundleNames.get(i)+"_"+resourceSuffix, locale, bundlesMap);
+                }
+            }
+            boolean reload = (bundles != null);
+            bundles = new Bundles(locale, platform, CompactBundlesMap.of(bundlesMap));
+            bundlesP = bundles;
+            if (reload) {
+                keysGeneration.incrementAndGet();
+            }
+        }
+        return bundles;
+    }
+
+    private Map<String, Object> getBundlesMap() {
+        return getBundles().map;
+    }
+
+    /* Counts resources lookups and conversions with instrumentation,
+     * if it's not null.  See ResourceManager.setInstrumentationEnabled().
+     */
+    void setInstrumentation(ResourceMapInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+    }
+
+    /* Returns a snapshot of the instrumentation counters, or null if
+     * this ResourceMap isn't instrumented.
+     */
+    ResourceMapStatistics getStatistics() {
+        ResourceMapInstrumentation instrumentation = this.instrumentation;
+        return (instrumentation == null) ? null : instrumentation.getStatistics(this, getResourceKeySet());
+    }
+
+    private void countLookup(ResourceMapInstrumentation instrumentation, String key, ResourceMap resourceMapNode) {
+        int depth = 0;
+        for (ResourceMap rm = this; (rm != resourceMapNode) && (rm != null); rm = rm.getParent()) {
+            depth += 1;
+        }
+        instrumentation.lookup(resourceMapNode != null, depth);
+        ResourceMapInstrumentation nodeInstrumentation = (resourceMapNode != null) ? resourceMapNode.instrumentation : null;
+        if (nodeInstrumentation != null) {
+            nodeInstrumentation.read(key);
+        }
+    }
+
+    /* Discards the loaded bundles, and this ResourceMap's entry in the
+     * startup cache, because the bundle files have changed.  They're
+     * loaded again when they're next used.  See
+     * ResourceManager.setHotReloadEnabled().
+     */
+    synchronized void reloadBundles() {
+        ResourceMapCache cache = startupCache;
+        if (cache != null) {
+            cache.removeBundlesMap(classLoader, bundleNames);
+        }
+        bundlesP = null;
+        keysGeneration.incrementAndGet();
+    }
+
+    /* Bundles that haven't been loaded yet are copied from cache, if
+     * it has a snapshot of them for the current locale and platform.
+     * Bundles that have already been loaded, and haven't been changed
+     * with putResource(), are replaced with the snapshot's copy.  See
+     * ResourceManager.setStartupCacheEnabled().
+     */
+    synchronized void setStartupCache(ResourceMapCache cache) {
+        startupCache = cache;
+        Bundles bundles = bundlesP;
+        if ((cache != null) && defaultResourceStorage && (bundles != null) && !bundles.modified) {
+            Map<String, Object> bundlesMap = cache.getBundlesMap(classLoader, bundleNames, bundles.locale, bundles.platform);
+            if (bundlesMap != null) {
+                bundlesP = new Bundles(bundles.locale, bundles.platform, CompactBundlesMap.of(bundlesMap));
+                keysGeneration.incrementAndGet();
+            }
+        }
+    }
+
+    /* Returns a copy of the flattened bundles, for a ResourceMapCache
+     * snapshot, or null if they haven't been loaded for locale and platform,
+     * if putResource() has changed them, or if they contain values that
+     * aren't Strings.
+     */
+    Map<String, String> getStartupCacheEntries(Locale locale, PlatformType platform) {
+        Bundles bundles = bundlesP;
+        if (!defaultResourceStorage || (bundles == null) || bundles.modified
+                || !bundles.locale.equals(locale) || (bundles.platform != platform)) {
+            return null;
+        }
+        Map<String, String> entries = new HashMap<String, String>();
+        for (Map.Entry<String, Object> entry : bundles.map.entrySet()) {
+            if (!(entry.getValue() instanceof String)) {
+                return null;
             }
-            bundlesMapP = bundlesMap;
-            bundlesLoaded = true;
+            entries.put(entry.getKey(), (String) entry.getValue());
         }
-        return bundlesMapP;
+        return entries;
     }
 
-    private void populateResourceMap(String bundleName, Map<String, Object> bundlesMap) {
+    /* Copies the resources of one ResourceBundle into bundlesMap.  If the
+     * resources directory has been indexed, see ResourceBundleIndex, the
+     * bundle is read from the index, otherwise it's loaded with
+     * ResourceBundle.getBundle(), unless an earlier attempt failed.
+     */
+    private void populateResourceMap(String bundleName, Locale locale, Map<String, Object> bundlesMap) {
+        ResourceBundleIndex index = ResourceBundleIndex.forDirectory(classLoader, resourcesDir);
+        if ((index != null) && index.populate(classLoader, resourcesDir, bundleName.substring(bundleName.lastIndexOf('.') + 1), locale, bundlesMap)) {
+            return;
+        }
+        if (ResourceBundleIndex.isMissingBundle(classLoader, bundleName, locale)) {
+            return;
+        }
         try {
             ResourceBundle bundle = ResourceBundle.getBundle(bundleName, locale, classLoader);
             Enumeration<String> keys = bundle.getKeys();
@@ -277,6 +523,7 @@ public class ResourceMap {
             /* bundleName is just a location to check, it's not
              * guaranteed to name a ResourceBundle
              */
+            ResourceBundleIndex.addMissingBundle(classLoader, bundleName, locale);
         }
     }
 
@@ -286,16 +533,140 @@ public class ResourceMap {
         }
     }
 
-    private synchronized Set<String> getBundlesMapKeys() {
-        if (bundlesMapKeysP == null) {
-            Set<String> allKeys = new HashSet<String>(getResourceKeySet());
+    /* The key set and the indices derived from it, for one keysGeneration.
+     * The key set includes the parents' keys, so it changes when a parent's
+     * keys do, e.g. when the parent's bundles are reloaded.
+     */
+    private static final class KeyIndexes {
+
+        private final int generation;
+        private volatile Set<String> keys = null;  // see getBundlesMapKeys()
+        private volatile Map<String, Map<String, String>> componentKeys = null;  // see getComponentKeys()
+        private volatile Map<String, List<ArrayElementKey>> arrayElementKeys = null;  // see getArrayElementKeys()
+
+        KeyIndexes(int generation) {
+            this.generation = generation;
+        }
+    }
+
+    /* Returns the KeyIndexes of the current keysGeneration, replacing
+     * the ones computed before the keys of this ResourceMap, or of one
+     * of its parents, changed.
+     */
+    private KeyIndexes getKeyIndexes() {
+        Bundles bundles = getBundles();
+        int generation = keysGeneration.get();
+        KeyIndexes keyIndexes = bundles.keyIndexes;
+        if ((keyIndexes == null) || (keyIndexes.generation != generation)) {
+            keyIndexes = new KeyIndexes(generation);
+            bundles.keyIndexes = keyIndexes;
+        }
+        return keyIndexes;
+    }
+
+    private Set<String> getBundlesMapKeys() {
+        if (flattened && cacheKeyResolutions) {
+            return getFlatChain().keys;
+        }
+        KeyIndexes keyIndexes = getKeyIndexes();
+        Set<String> keys = keyIndexes.keys;
+        if (keys == null) {
             ResourceMap parent = getParent();
             if (parent != null) {
-                allKeys.addAll(parent.keySet());
+                keys = new KeyUnion(getResourceKeySet(), parent.keySet());
+            } else {
+                keys = Collections.unmodifiableSet(getResourceKeySet());
+            }
+            keyIndexes.keys = keys;
+        }
+        return keys;
+    }
+
+    /* Lazily builds an index of keySet() by component name: for
+     * each key of the form "componentName.propertyName" it maps
+     * componentName to a (propertyName => key) map.  The index
+     * is discarded along with the keys when the keys, or the parents'
+     * keys, change.  Property maps preserve the keySet() iteration order.
+     */
+    private Map<String, Map<String, String>> getComponentKeys() {
+        KeyIndexes keyIndexes = getKeyIndexes();
+        Map<String, Map<String, String>> componentKeys = keyIndexes.componentKeys;
+        if (componentKeys == null) {
+            Set<String> allKeys = getBundlesMapKeys();
+            componentKeys = new HashMap<String, Map<String, String>>();
+            for (String key : allKeys) {
+                int i = key.lastIndexOf(".");
+                if (i != -1) {
+                    String componentName = key.substring(0, i);
+                    Map<String, String> propertyKeys = componentKeys.get(componentName);
+                    if (propertyKeys == null) {
+                        propertyKeys = new LinkedHashMap<String, String>(4);
+                        componentKeys.put(componentName, propertyKeys);
+                    }
+                    propertyKeys.put(key.substring(i + 1), key);
+                }
+            }
+            for (Map.Entry<String, Map<String, String>> entry : componentKeys.entrySet()) {
+                entry.setValue(Collections.unmodifiableMap(entry.getValue()));
             }
-            bundlesMapKeysP = Collections.unmodifiableSet(allKeys);
+            keyIndexes.componentKeys = componentKeys;
+        }
+        return componentKeys;
+    }
+
+    /* A key of the form "arrayKey[index]", see injectField().
+     */
+    private static class ArrayElementKey {
+
+        private final String key;
+        private final int index;
+
+        ArrayElementKey(String key, int index) {
+            this.key = key;
+            this.index = index;
         }
-        return bundlesMapKeysP;
+    }
+
+    /* Lazily builds an index of the keySet() elements that name
+     * array elements, like "MyClass.myArray[12]", by array key,
+     * like "MyClass.myArray".  The index is discarded along with
+     * the keys when the keys, or the parents' keys, change.
+     */
+    private Map<String, List<ArrayElementKey>> getArrayElementKeys() {
+        KeyIndexes keyIndexes = getKeyIndexes();
+        Map<String, List<ArrayElementKey>> arrayElementKeys = keyIndexes.arrayElementKeys;
+        if (arrayElementKeys == null) {
+            Set<String> allKeys = getBundlesMapKeys();
+            arrayElementKeys = new HashMap<String, List<ArrayElementKey>>();
+            for (String key : allKeys) {
+                int i0 = key.lastIndexOf('[');
+                int i1 = key.length() - 1;
+                if ((i0 < 1) || (i1 - i0 < 2) || (key.charAt(i1) != ']')) {
+                    continue;
+                }
+                int index = 0;
+                for (int i = i0 + 1; (i < i1) && (index != -1); i++) {
+                    char c = key.charAt(i);
+                    if ((c < '0') || (c > '9')) {
+                        index = -1;
+                    } else {
+                        // an index that overflows is clamped, setting it will fail
+                        index = (index > (Integer.MAX_VALUE - 9) / 10) ? Integer.MAX_VALUE : index * 10 + (c - '0');
+                    }
+                }
+                if (index != -1) {
+                    String arrayKey = key.substring(0, i0);
+                    List<ArrayElementKey> elementKeys = arrayElementKeys.get(arrayKey);
+                    if (elementKeys == null) {
+                        elementKeys = new ArrayList<ArrayElementKey>();
+                        arrayElementKeys.put(arrayKey, elementKeys);
+                    }
+                    elementKeys.add(new ArrayElementKey(key, index));
+                }
+            }
+            keyIndexes.arrayElementKeys = arrayElementKeys;
+        }
+        return arrayElementKeys;
     }
 
     /** 
@@ -309,6 +680,36 @@ public class ResourceMap {
         return getBundlesMapKeys();
     }
 
+    /* Loads the ResourceBundles of this ResourceMap and its parents,
+     * builds the component key index used by injectComponents(), evaluates
+     * String expressions and converts resources whose names end with "icon",
+     * like "Action.smallIcon", to Icons.  All of the results are cached,
+     * see ResourceManager.preload().  Lookup errors are logged here, they'll
+     * be reported again if the resource is actually used.
+     */
+    void preload() {
+        getComponentKeys();
+        if (!cacheKeyResolutions) {
+            return;  // don't second guess subclasses that manage their own resources
+        }
+        for (String key : keySet()) {
+            ResourceMap resourceMapNode = resolveKey(key);
+            Object value = (resourceMapNode != null) ? resourceMapNode.getResource(key) : null;
+            if (!(value instanceof String)) {
+                continue;
+            }
+            try {
+                if (key.regionMatches(true, key.length() - 4, "icon", 0, 4)) {
+                    getObject(key, Icon.class);
+                } else if (ResourceExpression.isExpression((String) value)) {
+                    getString(key);
+                }
+            } catch (LookupException e) {
+                logger.log(Level.FINE, "preload failed", e);
+            }
+        }
+    }
+
     /** 
      * Returns true if this resourceMap or its parent (recursively) contains 
      * the specified key.
@@ -319,6 +720,9 @@ public class ResourceMap {
      */
     public boolean containsKey(String key) {
         checkNullKey(key);
+        if (flattened && cacheKeyResolutions) {
+            return getFlatChain().containsKey(key);
+        }
         if (containsResourceKey(key)) {
             return true;
         } else {
@@ -337,6 +741,7 @@ public class ResourceMap {
         if(platform == null) throw new IllegalArgumentException("Platform could not be null.");
         if (this.platform != null) throw new IllegalStateException("The platform attribute is already set for this resource map.");
         this.platform = platform;
+        keysGeneration.incrementAndGet();
     }
 
     /** 
@@ -462,10 +867,13 @@ public class ResourceMap {
     }
 
     /**
-     * By default this method is used by {@code getObject} to cache
-     * values that have been retrieved, evaluated (as in ${key}
-     * expressions), and string converted.  A subclass could override
-     * this method to defeat caching or to refine the caching strategy.
+     * This method defines or replaces a resource's value.
+     * If a subclass overrides this method, {@code getResource}, or
+     * {@code containsResourceKey}, then {@code getObject} also uses it to
+     * cache values that have been retrieved, evaluated (as in ${key}
+     * expressions), and string converted.  Such a subclass can defeat
+     * caching or refine the caching strategy.  Otherwise converted
+     * values are cached separately and the original value is left alone.
      * The {@code putResource} method lazily loads ResourceBundles.
      * <p>
      * The protected {@code getResource}, {@code putResource}, and 
@@ -488,8 +896,18 @@ public class ResourceMap {
             setPlatform((PlatformType) value);
         } else {
             Map<String, Object> bundlesMap = getBundlesMap();
-            if (bundlesMap != null) {
-                bundlesMap.put(key, (value == null) ? NULL_RESOURCE : value);
+            if ((bundlesMap != null) && (bundlesMap.put(key, (value == null) ? NULL_RESOURCE : value) == null)) {
+                keysGeneration.incrementAndGet();  // a new key, see resolveKey()
+            }
+            Bundles bundles = getBundles();
+            bundles.modified = true;
+            Conversions conversions = bundles.conversions.remove(key);
+            if (conversions != null) {
+                conversions.invalidate();
+            }
+            Set<Conversions> dependents = bundles.dependents.get(key);
+            if (dependents != null) {
+                invalidateAll(dependents);
             }
         }
     }
@@ -526,8 +944,10 @@ public class ResourceMap {
      * The value returned by getObject will be of the specified type.  If a
      * string valued resource exists for <code>key</code>, and <code>type</code> is not
      * String.class, the value will be converted using a
-     * ResourceConverter and the ResourceMap entry updated with the
-     * converted value.  
+     * ResourceConverter and the converted value cached.  The string
+     * value itself isn't replaced, so the same resource can be
+     * retrieved as more than one type.  Cached images and icons
+     * are softly referenced.
      * <p>
      * If the named resource exists and an error occurs during lookup,
      * then a ResourceMap.LookupException is thrown.  This can 
@@ -570,106 +990,590 @@ public class ResourceMap {
                 type = Double.class;
             }
         }
-        Object value = null;
-        ResourceMap resourceMapNode = this;
-        /* Find the ResourceMap bundlesMap that contains a non-null
-         * value for the specified key, first check this ResourceMap,
-         * then its parents.
+        ResourceMap resourceMapNode = resolveKey(key);
+        ResourceMapInstrumentation instrumentation = this.instrumentation;
+        if (instrumentation != null) {
+            countLookup(instrumentation, key, resourceMapNode);
+        }
+        if (resourceMapNode == null) {
+            return null;
+        }
+        if (resourceMapNode.defaultResourceStorage) {
+            return getConvertedResource(resourceMapNode, key, type);
+        }
+
+        /* The ResourceMap that defines key is a subclass that manages
+         * its own resources.  If we've found a String expression then
+         * replace any ${key} variables, and then reset the original
+         * resourceMapNode entry.  If the value isn't the expected type,
+         * convert it and reset the entry again.
          */
+        Object value = resourceMapNode.getResource(key);
+        if ((value instanceof String) && ((String) value).contains("${")) {
+            value = evaluateExpression(key, ResourceExpression.compile((String) value), null);
+            resourceMapNode.putResource(key, value);
+        }
+        if ((value instanceof String) && !type.isAssignableFrom(String.class)) {
+            value = parseString(key, (String) value, type, resourceMapNode);
+            resourceMapNode.putResource(key, value);
+        }
+        return checkResourceType(key, value, type);
+    }
+
+    /* The values a String resource has been converted to, by type.
+     * The raw String value is never replaced, the same resource can be
+     * converted to any number of types.  Each conversion is computed once,
+     * under the Conversions lock; expressions are evaluated without locking
+     * since they look up other resources.  Images and Icons are softly
+     * referenced and recomputed if they're collected.
+     * 
+     * If the source is an expression, its compiled form and value are
+     * cached too.  The Conversions of expressions that refer to this
+     * resource are its dependents: when this resource's value changes,
+     * it's invalidated and so, recursively, are its dependents.
+     * Dependents are weakly referenced.
+     */
+    private static final class Conversions {
+
+        private final String source;  // the raw String value
+        private volatile ResourceExpression expression = null;  // see getExpression()
+        private volatile Object expressionValue = null;  // evaluated source, NULL_RESOURCE for ${null}
+        private volatile int expressionGeneration;  // keysGeneration when expressionValue was evaluated
+        private volatile int invalidations = 0;
+        private volatile Object[] values = new Object[0];  // type0, value0, type1, value1, ...
+        private final Set<Conversions> dependents = Collections.newSetFromMap(new WeakHashMap<Conversions, Boolean>());
+
+        Conversions(String source) {
+            this.source = source;
+        }
+
+        ResourceExpression getExpression() {
+            ResourceExpression expression = this.expression;
+            if (expression == null) {
+                expression = ResourceExpression.compile(source);
+                this.expression = expression;
+            }
+            return expression;
+        }
+
+        /* Returns the cached value of the expression, if it was evaluated
+         * in the current keysGeneration, or null.
+         */
+        Object getExpressionValue(int generation) {
+            Object value = expressionValue;
+            return ((value != null) && (expressionGeneration == generation)) ? value : null;
+        }
+
+        /* Caches the value of the expression unless it's been invalidated
+         * since it was evaluated.  If the value has changed, the values it
+         * was converted to are discarded.
+         */
+        synchronized void setExpressionValue(Object value, int generation, int invalidations) {
+            if (this.invalidations == invalidations) {
+                if (!value.equals(expressionValue)) {
+                    values = new Object[0];
+                }
+                expressionGeneration = generation;
+                expressionValue = value;
+            }
+        }
+
+        synchronized void addDependent(Conversions dependent) {
+            dependents.add(dependent);
+        }
+
+        void invalidate() {
+            List<Conversions> oldDependents;
+            synchronized (this) {
+                invalidations += 1;
+                expressionValue = null;
+                values = new Object[0];
+                oldDependents = new ArrayList<Conversions>(dependents);
+                dependents.clear();
+            }
+            for (Conversions dependent : oldDependents) {
+                dependent.invalidate();
+            }
+        }
+
+        /* Returns the value converted to exactly type, or any other
+         * converted value that's an instance of type, or null.
+         */
+        Object get(Class type) {
+            Object[] values = this.values;
+            Object compatibleValue = null;
+            for (int i = 0; i < values.length; i += 2) {
+                Object value = values[i + 1];
+                if (value instanceof SoftReference) {
+                    value = ((SoftReference) value).get();
+                }
+                if (value == null) {
+                    continue;  // collected
+                }
+                if (values[i] == type) {
+                    return value;
+                }
+                if ((compatibleValue == null) && type.isInstance(value)) {
+                    compatibleValue = value;
+                }
+            }
+            return compatibleValue;
+        }
+
+        /* Called with the Conversions lock held.
+         */
+        void put(Class type, Object value) {
+            Object[] oldValues = this.values;
+            List<Object> newValues = new ArrayList<Object>(oldValues.length + 2);
+            for (int i = 0; i < oldValues.length; i += 2) {
+                Object oldValue = oldValues[i + 1];
+                boolean collected = (oldValue instanceof SoftReference) && (((SoftReference) oldValue).get() == null);
+                if ((oldValues[i] != type) && !collected) {
+                    newValues.add(oldValues[i]);
+                    newValues.add(oldValues[i + 1]);
+                }
+            }
+            newValues.add(type);
+            newValues.add(((value instanceof Image) || (value instanceof Icon)) ? new SoftReference<Object>(value) : value);
+            this.values = newValues.toArray();
+        }
+    }
+
+    private static void invalidateAll(Set<Conversions> dependents) {
+        List<Conversions> oldDependents;
+        synchronized (dependents) {
+            oldDependents = new ArrayList<Conversions>(dependents);
+            dependents.clear();
+        }
+        for (Conversions dependent : oldDependents) {
+            dependent.invalidate();
+        }
+    }
+
+    /* Returns the Conversions for the resource named key, whose raw
+     * value is source.  If the resource's value has been replaced with
+     * putResource() since the Conversions were created, they're discarded.
+     */
+    private Conversions getConversions(String key, String source) {
+        Map<String, Conversions> conversionsMap = getBundles().conversions;
+        while (true) {
+            Conversions conversions = conversionsMap.get(key);
+            if ((conversions != null) && (conversions.source == source)) {
+                return conversions;
+            }
+            Conversions newConversions = new Conversions(source);
+            if ((conversions == null)
+                    ? (conversionsMap.putIfAbsent(key, newConversions) == null)
+                    : conversionsMap.replace(key, conversions, newConversions)) {
+                return newConversions;
+            }
+        }
+    }
+
+    /* Returns the value of the resource named key, defined by 
+     * resourceMapNode, converted to type.  Converted values are
+     * cached by resourceMapNode, so that all of the ResourceMaps that
+     * share it share the conversions too.  The ${key} variables in
+     * an expression are resolved relative to this ResourceMap, so
+     * evaluated expressions, and their conversions, are cached here.
+     * If one of this ResourceMap's parents manages its own resources,
+     * changes to the variables can't be tracked and expressions aren't
+     * cached at all.
+     */
+    private Object getConvertedResource(ResourceMap resourceMapNode, String key, Class type) {
+        Object value = resourceMapNode.getResource(key);
+        if (!(value instanceof String)) {
+            return checkResourceType(key, value, type);
+        }
+        String sValue = (String) value;
+        if (!ResourceExpression.isExpression(sValue)) {
+            if (type.isAssignableFrom(String.class)) {
+                return sValue;
+            }
+            return convert(resourceMapNode.getConversions(key, sValue), null, key, sValue, type, resourceMapNode);
+        }
+        if (!cacheKeyResolutions) {
+            sValue = evaluateExpression(key, ResourceExpression.compile(sValue), null);
+            if ((sValue == null) || type.isAssignableFrom(String.class)) {
+                return sValue;
+            }
+            return parseString(key, sValue, type, resourceMapNode);
+        }
+        Conversions conversions = getConversions(key, sValue);
+        int generation = keysGeneration.get();
+        Object expressionValue = conversions.getExpressionValue(generation);
+        if (expressionValue == null) {
+            int invalidations = conversions.invalidations;
+            String s = evaluateExpression(key, conversions.getExpression(), conversions);
+            expressionValue = (s == null) ? NULL_RESOURCE : s;
+            conversions.setExpressionValue(expressionValue, generation, invalidations);
+        }
+        if (expressionValue == NULL_RESOURCE) {
+            return null;
+        }
+        sValue = (String) expressionValue;
+        if (type.isAssignableFrom(String.class)) {
+            return sValue;
+        }
+        return convert(conversions, expressionValue, key, sValue, type, resourceMapNode);
+    }
+
+    /* Returns sValue converted to type, computing and caching the
+     * conversion once.  The conversion of an expression's value isn't
+     * cached if the expression has been invalidated in the meantime.
+     */
+    private static Object convert(Conversions conversions, Object expressionValue, String key, String sValue, Class type, ResourceMap resourceMapNode) {
+        Object convertedValue = conversions.get(type);
+        if (convertedValue == null) {
+            synchronized (conversions) {
+                convertedValue = conversions.get(type);
+                if (convertedValue == null) {
+                    convertedValue = parseString(key, sValue, type, resourceMapNode);
+                    if (convertedValue == null) {
+                        convertedValue = NULL_RESOURCE;
+                    }
+                    if (conversions.expressionValue == expressionValue) {
+                        conversions.put(type, convertedValue);
+                    }
+                }
+            }
+        }
+        return (convertedValue == NULL_RESOURCE) ? null : convertedValue;
+    }
+
+    /* Converts a String resource value to type with the ResourceConverter
+     * for type.
+     */
+    private static Object parseString(String key, String sValue, Class type, ResourceMap resourceMapNode) {
+        ResourceConverter stringConverter = ResourceConverter.forType(type);
+        if (stringConverter == null) {
+            String msg = "no StringConverter for required type";
+            throw new LookupException(msg, key, type);
+        }
+        try {
+            ResourceMapInstrumentation instrumentation = resourceMapNode.instrumentation;
+            if (instrumentation == null) {
+                return stringConverter.parseString(sValue, resourceMapNode);
+            }
+            long start = System.nanoTime();
+            Object value = stringConverter.parseString(sValue, resourceMapNode);
+            instrumentation.converted(stringConverter, System.nanoTime() - start, value);
+            return value;
+        } catch (ResourceConverterException e) {
+            String msg = "string conversion failed";
+            LookupException lfe = new LookupException(msg, key, type);
+            lfe.initCause(e);
+            throw lfe;
+        }
+    }
+
+    /* If the value we've found is the expected type, then we're done.
+     * Primitive types have already been mapped to the corresponding
+     * object type.
+     */
+    private static Object checkResourceType(String key, Object value, Class type) {
+        if ((value != null) && !type.isAssignableFrom(value.getClass())) {
+            String msg = "named resource has wrong type";
+            throw new LookupException(msg, key, type);
+        }
+        return value;
+    }
+
+    /* A cache of the ResourceMaps that define keys: for each key
+     * that's been looked up, the first ResourceMap in the parent chain
+     * that contains the key or NO_RESOURCE_MAP.  The cache is only valid
+     * for one keysGeneration.
+     */
+    private static final class KeyResolutions {
+
+        private final int generation;
+        private final Map<String, Object> map = new ConcurrentHashMap<String, Object>();
+
+        KeyResolutions(int generation) {
+            this.generation = generation;
+        }
+    }
+
+    /* Returns the ResourceMap that contains key, first check this
+     * ResourceMap, then its parents.  Returns null if none of them
+     * contain key.
+     */
+    private ResourceMap findKey(String key) {
+        ResourceMap resourceMapNode = this;
         while (resourceMapNode != null) {
             if (resourceMapNode.containsResourceKey(key)) {
-                value = resourceMapNode.getResource(key);
-                break;
+                return resourceMapNode;
             }
             resourceMapNode = resourceMapNode.getParent();
         }
-        /* If we've found a String expression then replace
-         * any ${key} variables, and then reset the
-         * the original resourceMapNode entry.
-         */
-        if ((value instanceof String) && ((String) value).contains("${")) {
-            value = evaluateStringExpression((String) value);
-            resourceMapNode.putResource(key, value);
+        return null;
+    }
+
+    /* The keys of a ResourceMap and all of its parents, each mapped to the
+     * first ResourceMap in the chain that defines it.  A FlatChain shares
+     * base, the merged table of one of its parents' FlatChains, and only
+     * stores the keys of the ResourceMaps below that parent in overlay,
+     * which shadows base.  Lookups check at most two tables.  When the
+     * overlay grows larger than base, they're merged into a new base.
+     * Valid for one keysGeneration.  See setFlattened().
+     */
+    private static final class FlatChain {
+
+        private final int generation;
+        private final Map<String, ResourceMap> overlay;
+        private final Map<String, ResourceMap> base;
+        private final int entries;  // the entries this FlatChain doesn't share
+        private final Set<String> keys;
+
+        FlatChain(int generation, Map<String, ResourceMap> overlay, Map<String, ResourceMap> base, boolean sharedBase) {
+            this.generation = generation;
+            this.overlay = overlay;
+            this.base = base;
+            this.entries = overlay.size() + (sharedBase ? 0 : base.size());
+            this.keys = overlay.isEmpty()
+                    ? Collections.unmodifiableSet(base.keySet())
+                    : new KeyUnion(overlay.keySet(), Collections.unmodifiableSet(base.keySet()));
         }
 
-        /* If the value we've found in resourceMapNode is
-         * the expected type, then we're done.  If the expected
-         * type is primitive and the value is the corresponding
-         * object type then we're done too.  Otherwise, 
-         * if it's a String, then try and convert the String
-         * and replace the original resourceMapNode entry,
-         * otherwise return null.
-         */
-        if (value != null) {
-            Class valueClass = value.getClass();
-            if (!type.isAssignableFrom(valueClass)) {
-                if (value instanceof String) {
-                    ResourceConverter stringConverter = ResourceConverter.forType(type);
-                    if (stringConverter != null) {
-                        String sValue = (String) value;
-                        try {
-                            value = stringConverter.parseString(sValue, resourceMapNode);
-                            resourceMapNode.putResource(key, value);
-                        } catch (ResourceConverterException e) {
-                            String msg = "string conversion failed";
-                            LookupException lfe = new LookupException(msg, key, type);
-                            lfe.initCause(e);
-                            throw lfe;
+        ResourceMap get(String key) {
+            ResourceMap resourceMapNode = overlay.get(key);
+            return (resourceMapNode != null) ? resourceMapNode : base.get(key);
+        }
+
+        boolean containsKey(String key) {
+            return overlay.containsKey(key) || base.containsKey(key);
+        }
+    }
+
+    /* Returns the flattened chain: this ResourceMap's keys over its
+     * parent's FlatChain, so that keys defined closer to this ResourceMap
+     * shadow their parents'.  A chain built while the keys change is
+     * stored with the old generation, and built again by the next lookup.
+     */
+    private FlatChain getFlatChain() {
+        getBundles();  // reload now if the locale or platform has changed
+        int generation = keysGeneration.get();
+        FlatChain flatChain = flatChainP;
+        if ((flatChain == null) || (flatChain.generation != generation)) {
+            ResourceMap parent = getParent();
+            FlatChain parentChain = (parent != null) ? parent.getFlatChain() : null;
+            Map<String, ResourceMap> overlay = new HashMap<String, ResourceMap>();
+            Map<String, ResourceMap> base = Collections.emptyMap();
+            if (parentChain != null) {
+                overlay.putAll(parentChain.overlay);
+                base = parentChain.base;
+            }
+            for (String key : getResourceKeySet()) {
+                overlay.put(key, this);
+            }
+            if (overlay.size() > base.size()) {
+                Map<String, ResourceMap> merged = new HashMap<String, ResourceMap>(base);
+                merged.putAll(overlay);
+                flatChain = new FlatChain(generation, Collections.<String, ResourceMap>emptyMap(), merged, false);
+            } else {
+                flatChain = new FlatChain(generation, overlay, base, true);
+            }
+            flatChainP = flatChain;
+        }
+        return flatChain;
+    }
+
+    /* Returns the number of key resolutions stored by this ResourceMap's
+     * flattened chain, rather than shared with its parents'.
+     */
+    int getFlatChainEntries() {
+        return getFlatChain().entries;
+    }
+
+    /* An unmodifiable union of a ResourceMap's keys and its parents' keys,
+     * that doesn't copy either set.  Keys that are in both are iterated
+     * once.
+     */
+    private static final class KeyUnion extends AbstractSet<String> {
+
+        private final Set<String> keys;
+        private final Set<String> parentKeys;
+        private volatile int size = -1;  // see size()
+
+        KeyUnion(Set<String> keys, Set<String> parentKeys) {
+            this.keys = keys;
+            this.parentKeys = parentKeys;
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return keys.contains(key) || parentKeys.contains(key);
+        }
+
+        @Override
+        public int size() {
+            int n = size;
+            if (n == -1) {
+                n = keys.size();
+                for (String key : parentKeys) {
+                    if (!keys.contains(key)) {
+                        n += 1;
+                    }
+                }
+                size = n;
+            }
+            return n;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            final Iterator<String> keysIterator = keys.iterator();
+            final Iterator<String> parentKeysIterator = parentKeys.iterator();
+            return new Iterator<String>() {
+                private String next = null;
+
+                @Override
+                public boolean hasNext() {
+                    if (next != null) {
+                        return true;
+                    }
+                    if (keysIterator.hasNext()) {
+                        next = keysIterator.next();
+                        return true;
+                    }
+                    while (parentKeysIterator.hasNext()) {
+                        String key = parentKeysIterator.next();
+                        if (!keys.contains(key)) {
+                            next = key;
+                            return true;
                         }
-                    } else {
-                        String msg = "no StringConverter for required type";
-                        throw new LookupException(msg, key, type);
                     }
-                } else {
-                    String msg = "named resource has wrong type";
-                    throw new LookupException(msg, key, type);
+                    return false;
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    String key = next;
+                    next = null;
+                    return key;
                 }
+            };
+        }
+    }
+
+    /* Returns findKey(key), cached.  Most lookups are for keys
+     * that aren't defined, like optional Action or Task properties,
+     * and without the cache each one of them checks every ResourceMap
+     * in the parent chain.  The cache is discarded when the bundles
+     * of any ResourceMap are reloaded, a platform is set, or putResource()
+     * defines a new key.  Lookups that race with one of those changes
+     * may store a stale result, but only in a cache that's already been
+     * discarded.  If this ResourceMap, or one of its parents, overrides
+     * containsResourceKey() then nothing is cached.
+     */
+    private ResourceMap resolveKey(String key) {
+        if (!cacheKeyResolutions) {
+            return findKey(key);
+        }
+        if (flattened) {
+            return getFlatChain().get(key);
+        }
+        getBundles();  // reload now if the locale or platform has changed
+        int generation = keysGeneration.get();
+        KeyResolutions resolutions = keyResolutionsP;
+        if ((resolutions == null) || (resolutions.generation != generation)) {
+            resolutions = new KeyResolutions(generation);
+            keyResolutionsP = resolutions;
+        }
+        Object resourceMapNode = resolutions.map.get(key);
+        if (resourceMapNode == null) {
+            resourceMapNode = findKey(key);
+            resolutions.map.put(key, (resourceMapNode == null) ? NO_RESOURCE_MAP : resourceMapNode);
+        }
+        return (resourceMapNode == NO_RESOURCE_MAP) ? null : (ResourceMap) resourceMapNode;
+    }
+
+    /* Records that dependent, the Conversions of an expression that
+     * refers to the resource named key, has to be invalidated if that
+     * resource's value changes.  If the resource's value is itself an
+     * expression, dependent also depends on that expression's variables.
+     */
+    private void addDependent(String key, Conversions dependent) {
+        ResourceMap resourceMapNode = resolveKey(key);
+        if (resourceMapNode == null) {
+            return;
+        }
+        Map<String, Set<Conversions>> dependentsMap = resourceMapNode.getBundles().dependents;
+        Set<Conversions> dependents = dependentsMap.get(key);
+        if (dependents == null) {
+            Set<Conversions> newDependents = Collections.newSetFromMap(new WeakHashMap<Conversions, Boolean>());
+            dependents = dependentsMap.putIfAbsent(key, newDependents);
+            if (dependents == null) {
+                dependents = newDependents;
             }
         }
-        return value;
+        synchronized (dependents) {
+            dependents.add(dependent);
+        }
+        Object value = resourceMapNode.getResource(key);
+        if ((value instanceof String) && ResourceExpression.isExpression((String) value)) {
+            getConversions(key, (String) value).addDependent(dependent);
+        }
     }
 
+    /* The ResourceMaps and keys of the expressions being evaluated
+     * by the current thread: map0, key0, map1, key1, ...
+     */
+    private static final ThreadLocal<List<Object>> evaluatingExpressions = new ThreadLocal<List<Object>>() {
+        @Override
+        protected List<Object> initialValue() {
+            return new ArrayList<Object>();
+        }
+    };
+
     /* Given the following resources:
      * 
      * hello = Hello
      * world = World
      * place = ${world}
      * 
-     * The value of evaluateStringExpression("${hello} ${place}")
-     * would be "Hello World".  The value of ${null} is null.
+     * The value of the "${hello} ${place}" expression would be
+     * "Hello World".  The value of ${null} is null.  If dependent
+     * isn't null, it's registered as a dependent of each variable's
+     * resource before the resource's value is retrieved.  An expression
+     * that refers to itself, directly or indirectly, causes a
+     * LookupException.
      */
-    private String evaluateStringExpression(String expr) {
-        if (expr.trim().equals("${null}")) {
+    private String evaluateExpression(String key, ResourceExpression expression, Conversions dependent) {
+        if (expression.isNull()) {
             return null;
         }
-        StringBuffer value = new StringBuffer();
-        int i0 = 0, i1;
-        while ((i1 = expr.indexOf("${", i0)) != -1) {
-            if ((i1 == 0) || ((i1 > 0) && (expr.charAt(i1 - 1) != '\\'))) {
-                int i2 = expr.indexOf("}", i1);
-                if ((i2 != -1) && (i2 > i1 + 2)) {
-                    String k = expr.substring(i1 + 2, i2);
-                    String v = getString(k);
-                    value.append(expr.substring(i0, i1));
-                    if (v != null) {
-                        value.append(v);
-                    } else {
-                        String msg = String.format("no value for \"%s\" in \"%s\"", k, expr);
-                        throw new LookupException(msg, k, String.class);
-                    }
-                    i0 = i2 + 1;  // skip trailing "}"
-                } else {
-                    String msg = String.format("no closing brace in \"%s\"", expr);
-                    throw new LookupException(msg, "<not found>", String.class);
+        List<Object> evaluating = evaluatingExpressions.get();
+        for (int i = 0; i < evaluating.size(); i += 2) {
+            if ((evaluating.get(i) == this) && key.equals(evaluating.get(i + 1))) {
+                String msg = String.format("circular reference to \"%s\" in \"%s\"", key, expression.getSource());
+                throw new LookupException(msg, key, String.class);
+            }
+        }
+        evaluating.add(this);
+        evaluating.add(key);
+        try {
+            String[] values = new String[expression.getKeyCount()];
+            for (int i = 0; i < values.length; i++) {
+                String k = expression.getKey(i);
+                if (dependent != null) {
+                    addDependent(k, dependent);
                 }
-            } else {  // we've found an escaped variable - "\${"
-                value.append(expr.substring(i0, i1 - 1));
-                value.append("${");
-                i0 = i1 + 2; // skip past "${"
+                String v = getString(k);
+                if (v == null) {
+                    String msg = String.format("no value for \"%s\" in \"%s\"", k, expression.getSource());
+                    throw new LookupException(msg, k, String.class);
+                }
+                values[i] = v;
             }
+            return expression.evaluate(values);
+        } finally {
+            evaluating.remove(evaluating.size() - 1);
+            evaluating.remove(evaluating.size() - 1);
         }
-        value.append(expr.substring(i0));
-        return value.toString();
     }
 
     /** 
@@ -685,7 +1589,8 @@ public class ResourceMap {
      * hello = Hello %s
      * </pre>
      * then the value of <code>getString("hello", "World")</code> would
-     * be <code>"Hello World"</code>.
+     * be <code>"Hello World"</code>.  Format strings are parsed once
+     * and cached.
      * 
      * @param key key of the resource
      * @param args key arguments
@@ -699,11 +1604,134 @@ public class ResourceMap {
         if (args.length == 0) {
             return (String) getObject(key, String.class);
         } else {
-            String format = (String) getObject(key, String.class);
-            return (format == null) ? null : String.format(format, args);
+            ResourceFormat format = getFormat(key);
+            return (format == null) ? null : format.format(args);
+        }
+    }
+
+    /**
+     * Appends the String value of the resource named <code>key</code>,
+     * formatted with the specified arguments, to <code>sb</code>.  The
+     * result is the same as appending {@link #getString(String, Object...)
+     * getString(key, args)}, however no intermediate String is created.
+     * This method is intended for values that are formatted very
+     * frequently, like progress messages.  If the resource doesn't exist
+     * nothing is appended and false is returned.  If formatting fails,
+     * <code>sb</code> is restored to its original length before the
+     * exception is thrown.
+     * 
+     * @param sb the StringBuilder to append to
+     * @param key key of the resource
+     * @param args key arguments
+     * @return true if the resource exists
+     * @throws LookupException if an error occurs during lookup or string conversion
+     * @throws IllegalArgumentException if <code>sb</code> or <code>key</code> is null
+     * @see #getString(String, Object...)
+     */
+    public boolean appendString(StringBuilder sb, String key, Object... args) {
+        if (sb == null) {
+            throw new IllegalArgumentException("null StringBuilder");
+        }
+        if (args.length == 0) {
+            String value = (String) getObject(key, String.class);
+            if (value != null) {
+                sb.append(value);
+            }
+            return value != null;
+        } else {
+            ResourceFormat format = getFormat(key);
+            if (format != null) {
+                int length = sb.length();
+                try {
+                    format.appendTo(sb, args);
+                } catch (RuntimeException e) {
+                    sb.setLength(length);  // same as getString(), nothing is appended
+                    throw e;
+                }
+            }
+            return format != null;
+        }
+    }
+
+    /**
+     * Returns the value of the resource named <code>key</code>, a
+     * {@link MessageFormat} pattern, applied to the specified arguments.
+     * For example, given the following resources
+     * <pre>
+     * filesCopied = Copied {0} of {1,number,integer} files
+     * </pre>
+     * then the value of <code>formatMessage("filesCopied", "some", 12)</code>
+     * would be <code>"Copied some of 12 files"</code>.  The MessageFormat
+     * is created once, for the default format locale, and cached; it's
+     * recreated if the resource's value, or the default format locale,
+     * changes.  It isn't the one returned by
+     * <code>getObject(key, MessageFormat.class)</code>.
+     * 
+     * @param key key of the resource
+     * @param args the arguments referred to by the pattern
+     * @return the formatted message or null if the resource doesn't exist
+     * @throws LookupException if an error occurs during lookup or string conversion
+     * @throws IllegalArgumentException if <code>key</code> is null
+     * @see MessageFormat
+     */
+    public String formatMessage(String key, Object... args) {
+        String pattern = (String) getObject(key, String.class);
+        if (pattern == null) {
+            return null;
+        }
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        Map<String, CachedMessageFormat> messageFormats = getBundles().messageFormats;
+        CachedMessageFormat cached = messageFormats.get(key);
+        if ((cached == null) || !cached.pattern.equals(pattern) || !cached.format.getLocale().equals(locale)) {
+            try {
+                cached = new CachedMessageFormat(pattern, new MessageFormat(pattern, locale));
+            } catch (IllegalArgumentException e) {
+                String msg = "string conversion failed";
+                LookupException lfe = new LookupException(msg, key, MessageFormat.class);
+                lfe.initCause(e);
+                throw lfe;
+            }
+            messageFormats.put(key, cached);
+        }
+        synchronized (cached.format) {  // MessageFormats aren't thread safe
+            return cached.format.format(args);
         }
     }
 
+    /* A MessageFormat created by formatMessage(), and the pattern
+     * it was created from.  It's never handed out, so it can't be
+     * modified by the application.
+     */
+    private static final class CachedMessageFormat {
+
+        final String pattern;
+        final MessageFormat format;
+
+        CachedMessageFormat(String pattern, MessageFormat format) {
+            this.pattern = pattern;
+            this.format = format;
+        }
+    }
+
+    /* Returns the parsed value of the format string resource named key,
+     * or null.  Formats are cached by key, they're reparsed if the
+     * resource's value, or the default format locale, changes.
+     */
+    private ResourceFormat getFormat(String key) {
+        String pattern = (String) getObject(key, String.class);
+        if (pattern == null) {
+            return null;
+        }
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        Map<String, ResourceFormat> formats = getBundles().formats;
+        ResourceFormat format = formats.get(key);
+        if ((format == null) || !format.getPattern().equals(pattern) || !format.getLocale().equals(locale)) {
+            format = ResourceFormat.compile(pattern, locale);
+            formats.put(key, format);
+        }
+        return format;
+    }
+
     /** 
      * A convenience method that's shorthand for calling:
      * <code>getObject(key, Boolean.class)</code>.
@@ -847,7 +1875,20 @@ public class ResourceMap {
      * URL url = myResourceMap.getClassLoader().getResource(filename);
      * new ImageIcon(iconURL);
      * </pre>
-     * 
+     * <p>
+     * Many small icons can be cut from one image, an atlas, so that
+     * only one image file has to be found and decoded.  An atlas is
+     * defined by an <code>Atlas.<i>name</i></code> resource, the path
+     * of the image, and one <code>Atlas.<i>name</i>.<i>region</i></code>
+     * Rectangle resource per icon.  Icon resources of the form
+     * <code>atlas:<i>name</i>.<i>region</i></code> refer to an icon
+     * in the atlas:
+     * <pre>
+     * Atlas.toolbar = toolbar.png
+     * Atlas.toolbar.open = 0, 0, 16, 16
+     * Atlas.toolbar.save = 16, 0, 16, 16
+     * openIcon = atlas:toolbar.open
+     * </pre>
      * 
      * @param key the name of the resource
      * @return the ImageIcon value of the resource named key
@@ -1009,99 +2050,150 @@ public class ResourceMap {
         }
     }
 
-    private void injectComponentProperty(Component component, PropertyDescriptor pd, String key) {
-        Method setter = pd.getWriteMethod();
-        Class type = pd.getPropertyType();
-        if ((setter != null) && (type != null) && containsKey(key)) {
-            Object value = getObject(key, type);
-            String propertyName = pd.getName();
-            try {
-                // Note: this could be generalized, we could delegate 
-                // to a component property injector.
-                if ("text".equals(propertyName) && (component instanceof AbstractButton)) {
-                    MnemonicText.configure(component, (String) value);
-                } else if ("text".equals(propertyName) && (component instanceof JLabel)) {
-                    MnemonicText.configure(component, (String) value);
-                } else {
-                    setter.invoke(component, value);
-                }
-            } catch (Exception e) {
-                String pdn = pd.getName();
-                String msg = "property setter failed";
-                RuntimeException re = new PropertyInjectionException(msg, key, component, pdn);
-                re.initCause(e);
-                throw re;
-            }
+    /* Returns true if the resource named key can be injected with setter,
+     * false if there's nothing to inject.  Throws a PropertyInjectionException
+     * if the resource names a property that can't be set.
+     */
+    private boolean isInjectable(Component component, ComponentPropertySetters.Setter setter, String key) {
+        String msg = injectionFailure(setter, key);
+        if (msg != null) {
+            throw new PropertyInjectionException(msg, key, component, setter.getPropertyName());
+        }
+        return setter.isWritable() && (setter.getPropertyType() != null);
+    }
+
+    /* Returns why the resource named key can't be injected with setter,
+     * or null if it can be, or if there's nothing to inject.  Doesn't
+     * touch the component, see prepareInjections().
+     */
+    private String injectionFailure(ComponentPropertySetters.Setter setter, String key) {
+        Class type = setter.getPropertyType();
+        if (setter.isWritable() && (type != null) && containsKey(key)) {
+            return null;
         } else if (type != null) {
-            String pdn = pd.getName();
-            String msg = "no value specified for resource";
-            throw new PropertyInjectionException(msg, key, component, pdn);
-        } else if (setter == null) {
-            String pdn = pd.getName();
-            String msg = "can't set read-only property";
-            throw new PropertyInjectionException(msg, key, component, pdn);
+            return "no value specified for resource";
+        } else if (!setter.isWritable()) {
+            return "can't set read-only property";
+        }
+        return null;
+    }
+
+    private static void setComponentProperty(Component component, ComponentPropertySetters.Setter setter, String key, Object value) {
+        try {
+            // The "text" property of AbstractButtons and JLabels
+            // is set with MnemonicText.configure(), see Setter#set
+            setter.set(component, value);
+        } catch (Exception e) {
+            String pdn = setter.getPropertyName();
+            String msg = "property setter failed";
+            RuntimeException re = new PropertyInjectionException(msg, key, component, pdn);
+            re.initCause(e);
+            throw re;
         }
     }
 
-    private void injectComponentProperties(Component component) {
-        String componentName = component.getName();
+    private void injectComponentProperty(Component component, ComponentPropertySetters.Setter setter, String key) {
+        if (isInjectable(component, setter, key)) {
+            Object value = getObject(key, setter.getPropertyType());
+            setComponentProperty(component, setter, key, value);
+        }
+    }
+
+    /* Receives the component properties that are defined by resources,
+     * see visitComponentProperties().
+     */
+    private interface ComponentPropertyVisitor {
+        void visit(ComponentPropertySetters.Setter setter, String key);
+
+        /* Called instead of visit() if the component class's properties
+         * couldn't be introspected.
+         */
+        void introspectionFailed(IntrospectionException e);
+    }
+
+    /* Calls visitor for each property of component, whose name is
+     * componentName and whose class is componentClass, that's defined
+     * by a resource.  If keys isn't null, only the resources named by
+     * keys are visited.  Returns true if any property was visited.
+     */
+    private boolean visitComponentProperties(Component component, String componentName, Class componentClass,
+            Set<String> keys, ComponentPropertyVisitor visitor) {
+        boolean visited = false;
         if (componentName != null) {
             /* Optimization: punt early if componentName doesn't
              * appear in any componentName.propertyName resource keys
              */
-            boolean matchingResourceFound = false;
-            for (String key : keySet()) {
-                int i = key.lastIndexOf(".");
-                if ((i != -1) && componentName.equals(key.substring(0, i))) {
-                    matchingResourceFound = true;
-                    break;
+            Map<String, String> propertyKeys = getComponentKeys().get(componentName);
+            if (propertyKeys == null) {
+                return false;
+            }
+            if ((keys != null) && Collections.disjoint(propertyKeys.values(), keys)) {
+                return false;
+            }
+            /* The component class's property setters are introspected
+             * once and cached, see ComponentPropertySetters
+             */
+            ComponentPropertySetters setters = ComponentPropertySetters.forClass(componentClass);
+            if (setters.getIntrospectionException() != null) {
+                visitor.introspectionFailed(setters.getIntrospectionException());
+                return false;
+            }
+            if (!setters.isEmpty()) {
+                for (Map.Entry<String, String> entry : propertyKeys.entrySet()) {
+                    String propertyName = entry.getKey();
+                    String key = entry.getValue();
+                    if (propertyName.length() == 0) {
+                        /* key has no property name suffix, e.g. "myComponentName."
+                         * This is probably a mistake.
+                         */
+                        String msg = "component resource lacks property name suffix";
+                        logger.warning(msg);
+                        break;
+                    }
+                    if ((keys != null) && !keys.contains(key)) {
+                        continue;
+                    }
+                    ComponentPropertySetters.Setter setter = setters.getSetter(propertyName);
+                    if (setter != null) {
+                        visitor.visit(setter, key);
+                        visited = true;
+                    } else {
+                        String msg = String.format(
+                                "[resource %s] component named %s doesn't have a property named %s",
+                                key, componentName, propertyName);
+                        logger.warning(msg);
+                    }
                 }
             }
-            if (!matchingResourceFound) {
-                return;
+        }
+        return visited;
+    }
+
+    /* Injects the properties of component that are defined by resources.
+     * If keys isn't null, only the resources named by keys are injected.
+     * Returns true if any property was set.
+     */
+    private boolean injectComponentProperties(final Component component, Set<String> keys) {
+        ComponentPropertyVisitor visitor = new ComponentPropertyVisitor() {
+            @Override
+            public void visit(ComponentPropertySetters.Setter setter, String key) {
+                injectComponentProperty(component, setter, key);
             }
-            BeanInfo beanInfo;
-            try {
-                beanInfo = Introspector.getBeanInfo(component.getClass());
-            } catch (IntrospectionException e) {
+
+            @Override
+            public void introspectionFailed(IntrospectionException e) {
                 String msg = "introspection failed";
                 RuntimeException re = new PropertyInjectionException(msg, null, component, null);
                 re.initCause(e);
                 throw re;
             }
-            PropertyDescriptor[] pds = beanInfo.getPropertyDescriptors();
-            if ((pds != null) && (pds.length > 0)) {
-                for (String key : keySet()) {
-                    int i = key.lastIndexOf(".");
-                    String keyComponentName = (i == -1) ? null : key.substring(0, i);
-                    if (componentName.equals(keyComponentName)) {
-                        if ((i + 1) == key.length()) {
-                            /* key has no property name suffix, e.g. "myComponentName."
-                             * This is probably a mistake.
-                             */
-                            String msg = "component resource lacks property name suffix";
-                            logger.warning(msg);
-                            break;
-                        }
-                        String propertyName = key.substring(i + 1);
-                        boolean matchingPropertyFound = false;
-                        for (PropertyDescriptor pd : pds) {
-                            if (pd.getName().equals(propertyName)) {
-                                injectComponentProperty(component, pd, key);
-                                matchingPropertyFound = true;
-                                break;
-                            }
-                        }
-                        if (!matchingPropertyFound) {
-                            String msg = String.format(
-                                    "[resource %s] component named %s doesn't have a property named %s",
-                                    key, componentName, propertyName);
-                            logger.warning(msg);
-                        }
-                    }
-                }
-            }
+        };
+        boolean injected = visitComponentProperties(component, component.getName(), component.getClass(), keys, visitor);
+        ResourceMapInstrumentation instrumentation = this.instrumentation;
+        if (instrumentation != null) {
+            instrumentation.componentsInjected(1, injected ? 1 : 0);
         }
+        return injected;
     }
 
     /**
@@ -1153,12 +2245,16 @@ public class ResourceMap {
         if (target == null) {
             throw new IllegalArgumentException("null target");
         }
-        injectComponentProperties(target);
+        injectComponentProperties(target, null);
     }
 
     /**
      * Applies {@link #injectComponent} to each Component in the
      * hierarchy with root <code>root</code>.
+     * <p>
+     * The root is remembered, weakly, so that the hierarchy can be
+     * injected again if the resources change, see
+     * {@link ResourceManager#setLocale ResourceManager.setLocale}.
      * 
      * @param root the root of the component hierarchy
      * @throws PropertyInjectionException if a property specified by a resource can't be set
@@ -1166,26 +2262,302 @@ public class ResourceMap {
      * @see #injectComponent
      */
     public void injectComponents(Component root) {
-        injectComponent(root);
-        if (root instanceof JMenu) {
+        if (root == null) {
+            throw new IllegalArgumentException("null root");
+        }
+        synchronized (injectedRoots) {
+            injectedRoots.put(root, Boolean.TRUE);
+        }
+        injectComponentTree(root, null, null);
+    }
+
+    /* Injects the hierarchy with root root.  If keys isn't null, only
+     * the resources named by keys are injected, injectComponent() isn't
+     * called, and the components whose properties are set are added to
+     * injected.  See ResourceManager.setLocale().
+     */
+    void injectComponentTree(Component root, Set<String> keys, Collection<Component> injected) {
+        if (keys == null) {
+            injectComponent(root);
+        } else if (injectComponentProperties(root, keys)) {
+            injected.add(root);
+        }
+        for (Component child : injectedChildren(root)) {
+            injectComponentTree(child, keys, injected);
+        }
+    }
+
+    /* Returns the children of root that injectComponents() visits.
+     */
+    private static Component[] injectedChildren(Component root) {
+        if ((root instanceof JComponent)
+                && Boolean.FALSE.equals(((JComponent) root).getClientProperty(INJECT_CHILDREN_PROPERTY))) {
+            return NO_COMPONENTS;
+        } else if (root instanceof JMenu) {
             /* Warning: we're bypassing the popupMenu here because
              * JMenu#getPopupMenu creates it; doesn't seem right
              * to do so at injection time.  Unfortunately, this
              * means that attempts to inject the popup menu's
              * "label" property will fail.
              */
-            JMenu menu = (JMenu) root;
-            for (Component child : menu.getMenuComponents()) {
-                injectComponents(child);
-            }
+            return ((JMenu) root).getMenuComponents();
         } else if (root instanceof Container) {
-            Container container = (Container) root;
-            for (Component child : container.getComponents()) {
-                injectComponents(child);
+            return ((Container) root).getComponents();
+        }
+        return NO_COMPONENTS;
+    }
+
+    /**
+     * Injects the hierarchy with root <code>root</code> like
+     * {@link #injectComponents}, but resolves and converts the resources
+     * on background threads.  Only the work that has to be done on the
+     * event dispatching thread is: the names and classes of the
+     * components in the hierarchy are recorded when this method is called,
+     * and the prepared property values are set later, in one batch, with
+     * {@link SwingUtilities#invokeLater}.  Decoding icons, creating fonts
+     * and parsing colors doesn't delay the event dispatching thread.
+     * Values are resolved in parallel, unless this ResourceMap or one
+     * of its parents manages its own resources.
+     * <p>
+     * Properties are set in the same order as {@code injectComponents}
+     * sets them.  If a property can't be set, the properties that come
+     * after it aren't set either and the Future fails with a
+     * {@link PropertyInjectionException} or a {@link LookupException}.
+     * Subclasses that override {@link #injectComponent} should note that
+     * it isn't called.
+     * <p>
+     * This method should be called on the event dispatching thread,
+     * or before the hierarchy has been realized.  The hierarchy shouldn't
+     * change until the Future is done.
+     *
+     * @param root the root of the component hierarchy
+     * @return a Future that's done when the properties have been set
+     * @throws IllegalArgumentException if root is null
+     * @see #injectComponents
+     */
+    public Future<?> injectComponentsInBackground(Component root) {
+        if (root == null) {
+            throw new IllegalArgumentException("null root");
+        }
+        synchronized (injectedRoots) {
+            injectedRoots.put(root, Boolean.TRUE);
+        }
+        final List<Component> components = new ArrayList<Component>();
+        final List<String> names = new ArrayList<String>();
+        snapshotComponentTree(root, components, names);
+        final Executor executor = getInjectionExecutor();
+        Supplier<List<PreparedInjection>> prepare = new Supplier<List<PreparedInjection>>() {
+            @Override
+            public List<PreparedInjection> get() {
+                return prepareInjections(components, names);
+            }
+        };
+        Function<List<PreparedInjection>, CompletableFuture<List<PreparedInjection>>> resolve =
+                new Function<List<PreparedInjection>, CompletableFuture<List<PreparedInjection>>>() {
+            @Override
+            public CompletableFuture<List<PreparedInjection>> apply(final List<PreparedInjection> injections) {
+                int nChunks = cacheKeyResolutions ? Runtime.getRuntime().availableProcessors() : 1;
+                int chunkSize = Math.max(1, (injections.size() + nChunks - 1) / nChunks);
+                List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+                for (int i = 0; i < injections.size(); i += chunkSize) {
+                    final List<PreparedInjection> chunk = injections.subList(i, Math.min(i + chunkSize, injections.size()));
+                    Runnable resolveChunk = new Runnable() {
+                        @Override
+                        public void run() {
+                            for (PreparedInjection injection : chunk) {
+                                injection.resolve();
+                            }
+                        }
+                    };
+                    futures.add(CompletableFuture.runAsync(resolveChunk, executor));
+                }
+                return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).thenApply(
+                        new Function<Void, List<PreparedInjection>>() {
+                    @Override
+                    public List<PreparedInjection> apply(Void ignore) {
+                        return injections;
+                    }
+                });
+            }
+        };
+        Consumer<List<PreparedInjection>> apply = new Consumer<List<PreparedInjection>>() {
+            @Override
+            public void accept(List<PreparedInjection> injections) {
+                for (PreparedInjection injection : injections) {
+                    injection.apply();
+                }
+            }
+        };
+        Executor edt = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                SwingUtilities.invokeLater(command);
+            }
+        };
+        return CompletableFuture.supplyAsync(prepare, executor).thenCompose(resolve).thenAcceptAsync(apply, edt);
+    }
+
+    /* Records the components of the hierarchy with root root, and their
+     * names, in the order injectComponentTree() visits them.
+     */
+    private static void snapshotComponentTree(Component root, List<Component> components, List<String> names) {
+        components.add(root);
+        names.add(root.getName());
+        for (Component child : injectedChildren(root)) {
+            snapshotComponentTree(child, components, names);
+        }
+    }
+
+    /* One property of a component that injectComponentsInBackground()
+     * will set: the resolved value, or the reason setting it would have
+     * failed.  PropertyInjectionExceptions format the component, so
+     * they're only created by apply(), on the EDT.
+     */
+    private final class PreparedInjection {
+
+        private final Component component;
+        private final ComponentPropertySetters.Setter setter;
+        private final String key;
+        private final String failure;
+        private final Throwable cause;
+        private Object value = null;
+        private RuntimeException exception = null;
+
+        PreparedInjection(Component component, ComponentPropertySetters.Setter setter, String key, String failure, Throwable cause) {
+            this.component = component;
+            this.setter = setter;
+            this.key = key;
+            this.failure = failure;
+            this.cause = cause;
+        }
+
+        void resolve() {
+            if (failure == null) {
+                try {
+                    value = getObject(key, setter.getPropertyType());
+                } catch (RuntimeException e) {
+                    exception = e;
+                }
+            }
+        }
+
+        void apply() {
+            if (failure != null) {
+                String pdn = (setter != null) ? setter.getPropertyName() : null;
+                RuntimeException re = new PropertyInjectionException(failure, key, component, pdn);
+                if (cause != null) {
+                    re.initCause(cause);
+                }
+                throw re;
+            } else if (exception != null) {
+                throw exception;
+            }
+            setComponentProperty(component, setter, key, value);
+        }
+    }
+
+    /* Finds the properties of the recorded components that are defined
+     * by resources, without touching the components themselves.
+     */
+    private List<PreparedInjection> prepareInjections(List<Component> components, List<String> names) {
+        final List<PreparedInjection> injections = new ArrayList<PreparedInjection>();
+        int nInjected = 0;
+        for (int i = 0; i < components.size(); i++) {
+            final Component component = components.get(i);
+            final boolean[] introspectionFailed = {false};
+            ComponentPropertyVisitor visitor = new ComponentPropertyVisitor() {
+                @Override
+                public void visit(ComponentPropertySetters.Setter setter, String key) {
+                    String failure = injectionFailure(setter, key);
+                    if ((failure != null) || (setter.isWritable() && (setter.getPropertyType() != null))) {
+                        injections.add(new PreparedInjection(component, setter, key, failure, null));
+                    }
+                }
+
+                @Override
+                public void introspectionFailed(IntrospectionException e) {
+                    injections.add(new PreparedInjection(component, null, null, "introspection failed", e));
+                    introspectionFailed[0] = true;
+                }
+            };
+            if (visitComponentProperties(component, names.get(i), component.getClass(), null, visitor)) {
+                nInjected += 1;
+            }
+            if (introspectionFailed[0]) {
+                break;
+            }
+        }
+        ResourceMapInstrumentation instrumentation = this.instrumentation;
+        if (instrumentation != null) {
+            instrumentation.componentsInjected(components.size(), nInjected);
+        }
+        return injections;
+    }
+
+    /* Lazily creates the pool of daemon threads used by
+     * injectComponentsInBackground().  Idle threads exit after a few seconds.
+     */
+    private static synchronized ExecutorService getInjectionExecutor() {
+        if (injectionExecutor == null) {
+            ThreadFactory threadFactory = new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ResourceMap injection " + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+            int nThreads = Runtime.getRuntime().availableProcessors();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    nThreads, nThreads,
+                    5L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), threadFactory);
+            executor.allowCoreThreadTimeOut(true);
+            injectionExecutor = executor;
+        }
+        return injectionExecutor;
+    }
+
+    /* Returns the roots passed to injectComponents() that haven't been
+     * garbage collected yet.
+     */
+    List<Component> getInjectedRoots() {
+        synchronized (injectedRoots) {
+            return new ArrayList<Component>(injectedRoots.keySet());
+        }
+    }
+
+    /* Returns the values of the component resources, the ones
+     * injectComponents() uses, with String expressions evaluated.
+     * Resources whose values can't be looked up are ignored.  Used by
+     * ResourceManager.setLocale() to find the resources that a
+     * locale change actually changes.
+     */
+    Map<String, Object> getComponentValues() {
+        Map<String, Object> values = new HashMap<String, Object>();
+        for (Map<String, String> propertyKeys : getComponentKeys().values()) {
+            for (String key : propertyKeys.values()) {
+                ResourceMap resourceMapNode = resolveKey(key);
+                Object value = (resourceMapNode != null) ? resourceMapNode.getResource(key) : null;
+                try {
+                    if (value instanceof String) {
+                        value = getString(key);
+                    }
+                } catch (LookupException e) {
+                    logger.log(Level.FINE, "component resource lookup failed", e);
+                    continue;
+                }
+                if (value != null) {
+                    values.put(key, value);
+                }
             }
         }
+        return values;
     }
 
+
     /** 
      * Unchecked exception thrown by {@link #injectFields} when 
      * an error occurs while attempting to set a field (a field that 
@@ -1240,43 +2612,36 @@ public class ResourceMap {
         }
     }
 
-    private void injectField(Field field, Object target, String key) {
-        Class type = field.getType();
-        if (type.isArray()) {
-            type = type.getComponentType();
-            Pattern p = Pattern.compile(key + "\\[([\\d]+)\\]");  // matches key[12]
-            for (String arrayElementKey : keySet()) {
-                Matcher m = p.matcher(arrayElementKey);
-                if (m.matches()) {
-                    /* field's value is an array, arrayElementKey is a resource
-                     * name of the form "MyClass.myArray[12]" and m.group(1)
-                     * matches the array index.  Set the index element
-                     * of the field's array to the value of the resource.
-                     */
-                    Object value = getObject(arrayElementKey, type);
-                    if (!field.isAccessible()) {
-                        field.setAccessible(true);
-                    }
-                    try {
-                        int index = Integer.parseInt(m.group(1));
-                        Array.set(field.get(target), index, value);
-                    } /* Array.set throws IllegalArgumentException, ArrayIndexOutOfBoundsException
-                     * field.get throws IllegalAccessException(Checked), IllegalArgumentException
-                     * Integer.parseInt throws NumberFormatException (Checked)
-                     */ catch (Exception e) {
-                        String msg = "unable to set array element";
-                        InjectFieldException ife = new InjectFieldException(msg, field, target, key);
-                        ife.initCause(e);
-                        throw ife;
-                    }
+    private void injectField(ResourceFields.ResourceField resourceField, Object target) {
+        Field field = resourceField.getField();
+        String key = resourceField.getKey();
+        Class type = resourceField.getType();
+        if (resourceField.isArray()) {
+            List<ArrayElementKey> elementKeys = getArrayElementKeys().get(key);
+            if (elementKeys == null) {
+                return;
+            }
+            for (ArrayElementKey elementKey : elementKeys) {
+                /* field's value is an array, elementKey is a resource
+                 * name of the form "MyClass.myArray[12]" and its index
+                 * is the array index.  Set the index element
+                 * of the field's array to the value of the resource.
+                 */
+                Object value = getObject(elementKey.key, type);
+                try {
+                    Array.set(field.get(target), elementKey.index, value);
+                } /* Array.set throws IllegalArgumentException, ArrayIndexOutOfBoundsException
+                 * field.get throws IllegalAccessException(Checked), IllegalArgumentException
+                 */ catch (Exception e) {
+                    String msg = "unable to set array element";
+                    InjectFieldException ife = new InjectFieldException(msg, field, target, key);
+                    ife.initCause(e);
+                    throw ife;
                 }
             }
         } else {  // field is not an array
             Object value = getObject(key, type);
             if (value != null) {
-                if (!field.isAccessible()) {
-                    field.setAccessible(true);
-                }
                 try {
                     field.set(target, value);
                 } /* Field.set throws IllegalAccessException, IllegalArgumentException,
@@ -1336,14 +2701,11 @@ public class ResourceMap {
         if (targetType.isArray()) {
             throw new IllegalArgumentException("array target");
         }
-        String keyPrefix = targetType.getSimpleName() + ".";
-        for (Field field : targetType.getDeclaredFields()) {
-            Resource resource = field.getAnnotation(Resource.class);
-            if (resource != null) {
-                String rKey = resource.key();
-                String key = (rKey.length() > 0) ? rKey : keyPrefix + field.getName();
-                injectField(field, target, key);
-            }
+        /* The @Resource fields and their keys are found once
+         * per class and cached, see ResourceFields
+         */
+        for (ResourceFields.ResourceField resourceField : ResourceFields.forClass(targetType).getFields()) {
+            injectField(resourceField, target);
         }
     }
 
@@ -1364,7 +2726,7 @@ public class ResourceMap {
             new EmptyBorderStringConverter()
         };
         for (ResourceConverter sc : stringConverters) {
-            ResourceConverter.register(sc);
+            ResourceConverter.registerDefault(sc);
         }
     }
 
@@ -1381,8 +2743,65 @@ public class ResourceMap {
         }
     }
 
+    /* Images are shared by all ResourceMaps, see ResourceImageCache.
+     */
     private static ImageIcon loadImageIcon(String s, ResourceMap resourceMap)
             throws ResourceConverterException {
+        if (s.startsWith(ATLAS_PREFIX)) {
+            return new ImageIcon(loadAtlasImage(s, resourceMap), s);
+        }
+        return ResourceImageCache.getInstance().getImageIcon(imageURL(s, resourceMap));
+    }
+
+    private static Image loadImage(String s, ResourceMap resourceMap)
+            throws ResourceConverterException {
+        if (s.startsWith(ATLAS_PREFIX)) {
+            return loadAtlasImage(s, resourceMap);
+        }
+        return ResourceImageCache.getInstance().getImage(imageURL(s, resourceMap));
+    }
+
+    /* Returns the region of an atlas image named by "atlas:name.region".
+     * The atlas image path is relative to the ResourceMap that defines
+     * the Atlas.name resource.  See getImageIcon().
+     */
+    private static Image loadAtlasImage(String s, ResourceMap resourceMap)
+            throws ResourceConverterException {
+        String name = s.substring(ATLAS_PREFIX.length()).trim();
+        int dot = name.lastIndexOf('.');
+        if ((dot <= 0) || (dot == name.length() - 1)) {
+            String msg = String.format("invalid atlas icon \"%s\", expected atlas:name.region", s);
+            throw new ResourceConverterException(msg, s);
+        }
+        String atlasKey = ATLAS_KEY_PREFIX + name.substring(0, dot);
+        ResourceMap atlasResourceMap = resourceMap;
+        while ((atlasResourceMap != null) && !atlasResourceMap.containsResourceKey(atlasKey)) {
+            atlasResourceMap = atlasResourceMap.getParent();
+        }
+        if (atlasResourceMap == null) {
+            String msg = String.format("couldn't find atlas resource \"%s\"", atlasKey);
+            throw new ResourceConverterException(msg, s);
+        }
+        Rectangle region;
+        try {
+            region = (Rectangle) resourceMap.getObject(ATLAS_KEY_PREFIX + name, Rectangle.class);
+        } catch (LookupException e) {
+            throw new ResourceConverterException("invalid atlas region", s, e);
+        }
+        if (region == null) {
+            String msg = String.format("couldn't find atlas region resource \"%s\"", ATLAS_KEY_PREFIX + name);
+            throw new ResourceConverterException(msg, s);
+        }
+        URL url = imageURL(atlasResourceMap.getString(atlasKey), atlasResourceMap);
+        try {
+            return ResourceImageCache.getInstance().getAtlasImage(url, region);
+        } catch (IllegalArgumentException e) {
+            throw new ResourceConverterException(e.getMessage(), s, e);
+        }
+    }
+
+    private static URL imageURL(String s, ResourceMap resourceMap)
+            throws ResourceConverterException {
         String rPath = resourcePath(s, resourceMap);
         if (rPath == null) {
             String msg = String.format("invalid image/icon path \"%s\"", s);
@@ -1390,7 +2809,7 @@ public class ResourceMap {
         }
         URL url = resourceMap.getClassLoader().getResource(rPath);
         if (url != null) {
-            return new ImageIcon(url);
+            return url;
         } else {
             //this will fail if resource package is not opened in module-info
             String msg = String.format("couldn't find Icon resource \"%s\"", s);
@@ -1475,6 +2894,9 @@ public class ResourceMap {
         }
     }
 
+    private static final String ATLAS_PREFIX = "atlas:";
+    private static final String ATLAS_KEY_PREFIX = "Atlas.";
+
     private static class IconStringConverter extends ResourceConverter {
 
         IconStringConverter() {
@@ -1500,7 +2922,7 @@ public class ResourceMap {
 
         @Override
         public Object parseString(String s, ResourceMap resourceMap) throws ResourceConverterException {
-            return loadImageIcon(s, resourceMap).getImage();
+            return loadImage(s, resourceMap);
         }
     }
 
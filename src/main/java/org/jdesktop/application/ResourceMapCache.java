@@ -0,0 +1,338 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import org.jdesktop.application.utils.PlatformType;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An internal helper class: the flattened bundle maps of a set of
+ * ResourceMaps, for one locale and platform, saved in
+ * {@link LocalStorage} at the end of one run and read at the start of
+ * the next one, so that ResourceMaps don't have to locate and parse
+ * their ResourceBundles again.  The snapshot records the size and
+ * modification time of the files its bundles were loaded from: the
+ * bundle files, their directories and the jars that contain them.
+ * It's only used if none of them has changed, and if the Java version
+ * and the class path are the same.  Snapshots are keyed by the
+ * ResourceMaps' bundle names and class loader; ResourceMaps whose class
+ * loader can't be identified in the next run aren't saved.  See
+ * {@link ResourceManager#setStartupCacheEnabled}.
+ */
+final class ResourceMapCache {
+
+    private static final String FILE_NAME_PREFIX = "bsaf-resources-";
+    private static final int MAGIC = 0x42535243;  // "BSRC"
+    private static final int VERSION = 2;
+
+    private final Locale locale;
+    private final PlatformType platform;
+    private final Map<List<String>, Map<String, String>> bundles;  // class loader key, bundle names => key/value
+    private final Map<String, long[]> sources;  // file path => size, modification time
+
+    ResourceMapCache(Locale locale, PlatformType platform) {
+        this.locale = locale;
+        this.platform = platform;
+        this.bundles = new ConcurrentHashMap<List<String>, Map<String, String>>();
+        this.sources = new ConcurrentHashMap<String, long[]>();
+    }
+
+    /**
+     * Returns the name of the LocalStorage file for locale and platform.
+     */
+    static String fileName(Locale locale, PlatformType platform) {
+        return FILE_NAME_PREFIX + locale.toLanguageTag() + "-" + platform.name() + ".bin";
+    }
+
+    Locale getLocale() {
+        return locale;
+    }
+
+    PlatformType getPlatform() {
+        return platform;
+    }
+
+    /**
+     * Returns the number of ResourceMaps in this snapshot.
+     */
+    int size() {
+        return bundles.size();
+    }
+
+    /* Returns a name for classLoader that identifies it in the next run
+     * too, or null if it can't be told apart from other class loaders.
+     */
+    static String classLoaderKey(ClassLoader classLoader) {
+        if ((classLoader == ClassLoader.getSystemClassLoader()) || (classLoader == ClassLoader.getPlatformClassLoader())) {
+            return classLoader.getClass().getName();
+        } else if (classLoader instanceof URLClassLoader) {
+            return classLoader.getClass().getName() + Arrays.toString(((URLClassLoader) classLoader).getURLs());
+        }
+        return null;
+    }
+
+    private static List<String> bundlesKey(String classLoaderKey, List<String> bundleNames) {
+        List<String> key = new ArrayList<String>(bundleNames.size() + 1);
+        key.add(classLoaderKey);
+        key.addAll(bundleNames);
+        return key;
+    }
+
+    /**
+     * Returns a new, modifiable, copy of the flattened bundles named by
+     * bundleNames and loaded by classLoader, or null if this snapshot
+     * doesn't contain them or if it was taken for a different locale
+     * or platform.
+     */
+    Map<String, Object> getBundlesMap(ClassLoader classLoader, List<String> bundleNames, Locale locale, PlatformType platform) {
+        String classLoaderKey = classLoaderKey(classLoader);
+        if ((classLoaderKey == null) || !this.locale.equals(locale) || (this.platform != platform)) {
+            return null;
+        }
+        Map<String, String> entries = bundles.get(bundlesKey(classLoaderKey, bundleNames));
+        return (entries == null) ? null : new HashMap<String, Object>(entries);
+    }
+
+    /**
+     * Adds the flattened bundles named by bundleNames, loaded by
+     * classLoader from resourcesDir, to this snapshot, and records the
+     * files they were loaded from.  Returns false, and doesn't add them,
+     * if the class loader or the files can't be identified.
+     */
+    boolean putBundlesMap(ClassLoader classLoader, String resourcesDir, List<String> bundleNames, Map<String, String> entries) {
+        String classLoaderKey = classLoaderKey(classLoader);
+        if (classLoaderKey == null) {
+            return false;
+        }
+        Set<URL> urls = new LinkedHashSet<URL>();
+        try {
+            urls.addAll(Collections.list(classLoader.getResources(resourcesDir)));
+        } catch (IOException e) {
+            return false;
+        }
+        Set<String> simpleNames = new LinkedHashSet<String>();
+        for (String bundleName : bundleNames) {
+            URL url = classLoader.getResource(bundleName.replace('.', '/') + ".properties");
+            if (url != null) {
+                urls.add(url);  // in case a jar doesn't have directory entries
+            }
+            simpleNames.add(bundleName.substring(bundleName.lastIndexOf('.') + 1));
+        }
+        List<File> files = new ArrayList<File>();
+        for (URL url : urls) {
+            File file = sourceFile(url);
+            if (file == null) {
+                return false;
+            }
+            files.add(file);
+            File[] directoryFiles = file.isDirectory() ? file.listFiles() : null;
+            if (directoryFiles != null) {
+                for (File f : directoryFiles) {
+                    if (isBundleFile(f.getName(), simpleNames)) {
+                        files.add(f);
+                    }
+                }
+            }
+        }
+        for (File file : files) {
+            addSource(file);
+        }
+        bundles.put(bundlesKey(classLoaderKey, bundleNames), entries);
+        return true;
+    }
+
+    private static boolean isBundleFile(String fileName, Set<String> simpleNames) {
+        if (fileName.equals(ResourceBundleIndex.INDEX_FILE_NAME)) {
+            return true;
+        }
+        for (String simpleName : simpleNames) {
+            if (fileName.startsWith(simpleName) && (fileName.endsWith(".properties") || fileName.endsWith(".class"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* Returns the file or directory url refers to, or the jar that
+     * contains it, or null if url isn't a local file.
+     */
+    private static File sourceFile(URL url) {
+        try {
+            if ("file".equals(url.getProtocol())) {
+                return new File(url.toURI());
+            } else if ("jar".equals(url.getProtocol())) {
+                String path = url.getPath();
+                int separator = path.indexOf("!/");
+                URL jarURL = new URL((separator == -1) ? path : path.substring(0, separator));
+                return "file".equals(jarURL.getProtocol()) ? new File(jarURL.toURI()) : null;
+            }
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            // can't be checked
+        }
+        return null;
+    }
+
+    /**
+     * Records the current size and modification time of file, the
+     * snapshot is ignored in the next run if they've changed.
+     */
+    void addSource(File file) {
+        sources.put(file.getAbsolutePath(), new long[] {file.length(), file.lastModified()});
+    }
+
+    /**
+     * Removes the flattened bundles named by bundleNames, and loaded by
+     * classLoader, from this snapshot, because they've changed.
+     */
+    void removeBundlesMap(ClassLoader classLoader, List<String> bundleNames) {
+        String classLoaderKey = classLoaderKey(classLoader);
+        if (classLoaderKey != null) {
+            bundles.remove(bundlesKey(classLoaderKey, bundleNames));
+        }
+    }
+
+    /* The Java version and the class path, a snapshot taken with
+     * different ones is ignored.
+     */
+    private static String environment() {
+        StringBuilder sb = new StringBuilder();
+        for (String property : new String[] {"java.version", "java.class.path", "jdk.module.path"}) {
+            sb.append(System.getProperty(property, "")).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write}.  Returns null if the
+     * snapshot's locale or platform don't match, or if the environment
+     * or one of the files the bundles were loaded from has changed.
+     * @throws IOException if bytes isn't a snapshot
+     */
+    static ResourceMapCache read(byte[] bytes, Locale locale, PlatformType platform) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) {
+            throw new IOException("not a ResourceMap cache, or an unsupported version");
+        }
+        if (!locale.toLanguageTag().equals(in.readUTF()) || !platform.name().equals(in.readUTF())) {
+            return null;
+        }
+        String[] strings = new String[in.readInt()];
+        byte[] buffer = new byte[256];
+        for (int i = 0; i < strings.length; i++) {
+            int length = in.readInt();
+            if (length > buffer.length) {
+                buffer = new byte[length];
+            }
+            in.readFully(buffer, 0, length);
+            strings[i] = new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+        if (!environment().equals(strings[in.readInt()])) {
+            return null;
+        }
+        ResourceMapCache cache = new ResourceMapCache(locale, platform);
+        for (int i = in.readInt(); i > 0; i--) {
+            String path = strings[in.readInt()];
+            long length = in.readLong();
+            long lastModified = in.readLong();
+            File file = new File(path);
+            if ((file.length() != length) || (file.lastModified() != lastModified)) {
+                return null;
+            }
+            cache.sources.put(path, new long[] {length, lastModified});
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            String[] key = new String[in.readInt()];
+            for (int j = 0; j < key.length; j++) {
+                key[j] = strings[in.readInt()];
+            }
+            int nEntries = in.readInt();
+            Map<String, String> entries = new HashMap<String, String>((nEntries * 4) / 3 + 1);
+            for (int j = 0; j < nEntries; j++) {
+                entries.put(strings[in.readInt()], strings[in.readInt()]);
+            }
+            cache.bundles.put(Arrays.asList(key), entries);
+        }
+        return cache;
+    }
+
+    /**
+     * Writes this snapshot.  Like {@link ResourceBundleIndex}, every
+     * distinct string is written once.
+     */
+    void write(OutputStream out) throws IOException {
+        Map<String, Integer> stringIndexes = new LinkedHashMap<String, Integer>();
+        String environment = environment();
+        intern(stringIndexes, environment);
+        for (String path : sources.keySet()) {
+            intern(stringIndexes, path);
+        }
+        for (Map.Entry<List<String>, Map<String, String>> bundle : bundles.entrySet()) {
+            for (String s : bundle.getKey()) {
+                intern(stringIndexes, s);
+            }
+            for (Map.Entry<String, String> entry : bundle.getValue().entrySet()) {
+                intern(stringIndexes, entry.getKey());
+                intern(stringIndexes, entry.getValue());
+            }
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeUTF(locale.toLanguageTag());
+        data.writeUTF(platform.name());
+        data.writeInt(stringIndexes.size());
+        for (String s : stringIndexes.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+        data.writeInt(stringIndexes.get(environment));
+        data.writeInt(sources.size());
+        for (Map.Entry<String, long[]> source : sources.entrySet()) {
+            data.writeInt(stringIndexes.get(source.getKey()));
+            data.writeLong(source.getValue()[0]);
+            data.writeLong(source.getValue()[1]);
+        }
+        data.writeInt(bundles.size());
+        for (Map.Entry<List<String>, Map<String, String>> bundle : bundles.entrySet()) {
+            data.writeInt(bundle.getKey().size());
+            for (String s : bundle.getKey()) {
+                data.writeInt(stringIndexes.get(s));
+            }
+            data.writeInt(bundle.getValue().size());
+            for (Map.Entry<String, String> entry : bundle.getValue().entrySet()) {
+                data.writeInt(stringIndexes.get(entry.getKey()));
+                data.writeInt(stringIndexes.get(entry.getValue()));
+            }
+        }
+        data.flush();
+    }
+
+    private static void intern(Map<String, Integer> stringIndexes, String s) {
+        if (!stringIndexes.containsKey(s)) {
+            stringIndexes.put(s, stringIndexes.size());
+        }
+    }
+}
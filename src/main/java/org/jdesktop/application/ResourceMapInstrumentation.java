@@ -0,0 +1,126 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import java.awt.Image;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.swing.Icon;
+import javax.swing.ImageIcon;
+
+/**
+ * An internal helper class: the counters of one instrumented ResourceMap.
+ * A ResourceMap that isn't instrumented doesn't have one, so the only
+ * cost of instrumentation when it's disabled is a null check.  See
+ * {@link ResourceManager#setInstrumentationEnabled}.
+ */
+final class ResourceMapInstrumentation {
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder chainDepth = new LongAdder();
+    private final LongAdder iconBytes = new LongAdder();
+    private final LongAdder componentsVisited = new LongAdder();
+    private final LongAdder componentsInjected = new LongAdder();
+    private final Map<String, LongAdder[]> conversions = new ConcurrentHashMap<String, LongAdder[]>();  // converter class => count, nanoseconds
+    private final Set<String> readKeys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Records a lookup in the ResourceMap.  If the key was found,
+     * depth is the number of parents that were checked first.
+     */
+    void lookup(boolean hit, int depth) {
+        lookups.increment();
+        if (hit) {
+            hits.increment();
+            chainDepth.add(depth);
+        }
+    }
+
+    /**
+     * Records that injectComponents() visited nVisited components, and
+     * set the properties of nInjected of them.
+     */
+    void componentsInjected(int nVisited, int nInjected) {
+        componentsVisited.add(nVisited);
+        componentsInjected.add(nInjected);
+    }
+
+    /**
+     * Records that the resource named key, defined by the ResourceMap,
+     * was read.
+     */
+    void read(String key) {
+        readKeys.add(key);
+    }
+
+    /**
+     * Records the conversion of one of the ResourceMap's resources
+     * by converter, and the size of the image it decoded, if any.
+     */
+    void converted(ResourceConverter converter, long nanos, Object value) {
+        String converterName = converter.getClass().getName();
+        LongAdder[] counters = conversions.get(converterName);
+        if (counters == null) {
+            LongAdder[] newCounters = {new LongAdder(), new LongAdder()};
+            counters = conversions.putIfAbsent(converterName, newCounters);
+            if (counters == null) {
+                counters = newCounters;
+            }
+        }
+        counters[0].increment();
+        counters[1].add(nanos);
+        iconBytes.add(imageBytes(value));
+    }
+
+    /* Returns the size of a decoded image at four bytes per pixel, or 0
+     * if value isn't an image or hasn't been decoded yet.  Deferred icons
+     * and multi-resolution images, whose size is read from the image's
+     * header, aren't decoded by the conversion.
+     */
+    private static long imageBytes(Object value) {
+        if ((value instanceof DeferredImageIcon) && !((DeferredImageIcon) value).isLoaded()) {
+            return 0L;
+        } else if ((value instanceof ResourceMultiResolutionImage)
+                || ((value instanceof ImageIcon) && (((ImageIcon) value).getImage() instanceof ResourceMultiResolutionImage))) {
+            return 0L;
+        } else if (value instanceof Icon) {
+            Icon icon = (Icon) value;
+            return 4L * Math.max(0, icon.getIconWidth()) * Math.max(0, icon.getIconHeight());
+        } else if (value instanceof Image) {
+            Image image = (Image) value;
+            return 4L * Math.max(0, image.getWidth(null)) * Math.max(0, image.getHeight(null));
+        }
+        return 0L;
+    }
+
+    /**
+     * Returns a snapshot of the counters.  The unused keys are the
+     * ones in resourceKeys that haven't been read.
+     */
+    ResourceMapStatistics getStatistics(ResourceMap rm, Set<String> resourceKeys) {
+        Map<String, Long> conversionCounts = new TreeMap<String, Long>();
+        Map<String, Long> conversionNanos = new TreeMap<String, Long>();
+        for (Map.Entry<String, LongAdder[]> entry : conversions.entrySet()) {
+            conversionCounts.put(entry.getKey(), entry.getValue()[0].sum());
+            conversionNanos.put(entry.getKey(), entry.getValue()[1].sum());
+        }
+        Set<String> unusedKeys = new TreeSet<String>(resourceKeys);
+        unusedKeys.removeAll(readKeys);
+        return new ResourceMapStatistics(
+                rm.getBundleNames(),
+                lookups.sum(), hits.sum(), chainDepth.sum(),
+                Collections.unmodifiableMap(conversionCounts),
+                Collections.unmodifiableMap(conversionNanos),
+                iconBytes.sum(),
+                componentsVisited.sum(), componentsInjected.sum(),
+                Collections.unmodifiableSet(new TreeSet<String>(readKeys)),
+                Collections.unmodifiableSet(unusedKeys));
+    }
+}
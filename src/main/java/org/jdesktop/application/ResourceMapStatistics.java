@@ -0,0 +1,198 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import java.beans.ConstructorProperties;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A snapshot of the instrumentation counters of one {@link ResourceMap},
+ * see {@link ResourceManager#setInstrumentationEnabled}.  Lookups are
+ * counted by the ResourceMap they were made with.  Conversions, decoded
+ * images and read keys are counted by the ResourceMap that defines the
+ * resource, so that {@link #getUnusedKeys} lists the resources, defined
+ * by this ResourceMap's bundles, that haven't been used since
+ * instrumentation was enabled.
+ */
+public final class ResourceMapStatistics {
+
+    private final List<String> bundleNames;
+    private final long lookupCount;
+    private final long hitCount;
+    private final long chainDepth;
+    private final Map<String, Long> conversionCounts;
+    private final Map<String, Long> conversionNanos;
+    private final long iconBytesDecoded;
+    private final long componentsVisited;
+    private final long componentsInjected;
+    private final Set<String> readKeys;
+    private final Set<String> unusedKeys;
+
+    /**
+     * Constructs a snapshot.  Applications don't need to create these,
+     * they're returned by {@link ResourceManager#getStatistics}.
+     *
+     * @param bundleNames the ResourceMap's bundle names
+     * @param lookupCount the number of lookups
+     * @param hitCount the number of lookups that found a resource
+     * @param chainDepth the total number of parents checked by lookups that found a resource
+     * @param conversionCounts the number of conversions, by converter class
+     * @param conversionNanos the time spent converting, by converter class
+     * @param iconBytesDecoded the size of the decoded images, at four bytes per pixel
+     * @param componentsVisited the number of components visited by injection
+     * @param componentsInjected the number of visited components whose properties were set
+     * @param readKeys the names of the resources that were read
+     * @param unusedKeys the names of the resources that weren't read
+     */
+    @ConstructorProperties({"bundleNames", "lookupCount", "hitCount", "chainDepth",
+            "conversionCounts", "conversionNanos", "iconBytesDecoded", "componentsVisited", "componentsInjected",
+            "readKeys", "unusedKeys"})
+    public ResourceMapStatistics(List<String> bundleNames, long lookupCount, long hitCount, long chainDepth,
+            Map<String, Long> conversionCounts, Map<String, Long> conversionNanos, long iconBytesDecoded,
+            long componentsVisited, long componentsInjected, Set<String> readKeys, Set<String> unusedKeys) {
+        this.bundleNames = bundleNames;
+        this.lookupCount = lookupCount;
+        this.hitCount = hitCount;
+        this.chainDepth = chainDepth;
+        this.conversionCounts = conversionCounts;
+        this.conversionNanos = conversionNanos;
+        this.iconBytesDecoded = iconBytesDecoded;
+        this.componentsVisited = componentsVisited;
+        this.componentsInjected = componentsInjected;
+        this.readKeys = readKeys;
+        this.unusedKeys = unusedKeys;
+    }
+
+    /**
+     * Returns the names of the ResourceMap's bundles, which identify it.
+     *
+     * @return the ResourceMap's bundle names
+     * @see ResourceMap#getBundleNames
+     */
+    public List<String> getBundleNames() {
+        return bundleNames;
+    }
+
+    /**
+     * Returns the number of resources looked up with the ResourceMap,
+     * e.g. with {@link ResourceMap#getObject getObject} or
+     * {@link ResourceMap#getString getString}.
+     *
+     * @return the number of lookups
+     */
+    public long getLookupCount() {
+        return lookupCount;
+    }
+
+    /**
+     * Returns the number of lookups that found a resource, in the
+     * ResourceMap or one of its parents.
+     *
+     * @return the number of lookups that found a resource
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the total number of parent ResourceMaps that were checked
+     * by the lookups that found a resource.  A resource found in the
+     * ResourceMap itself adds 0, one found in its parent adds 1, and so on.
+     *
+     * @return the total depth of the parent chain traversed
+     */
+    public long getChainDepth() {
+        return chainDepth;
+    }
+
+    /**
+     * Returns the number of String resources converted by the
+     * {@link ResourceConverter ResourceConverters}, by the class name
+     * of the converter.  Conversions are cached, each one is counted
+     * once.
+     *
+     * @return the number of conversions by converter class
+     */
+    public Map<String, Long> getConversionCounts() {
+        return conversionCounts;
+    }
+
+    /**
+     * Returns the time spent converting String resources, in
+     * nanoseconds, by the class name of the converter.
+     *
+     * @return the cumulative conversion time by converter class
+     */
+    public Map<String, Long> getConversionNanos() {
+        return conversionNanos;
+    }
+
+    /**
+     * Returns the estimated size, at four bytes per pixel, of the images
+     * decoded for the icon and image resources.  Icons whose decoding
+     * is {@link ResourceImageCache#setDeferredLoading deferred}, and
+     * {@link ResourceImageCache#setMultiResolution multi-resolution}
+     * images, whose variants are decoded when they're drawn, aren't
+     * counted.
+     *
+     * @return the size of the decoded images
+     */
+    public long getIconBytesDecoded() {
+        return iconBytesDecoded;
+    }
+
+    /**
+     * Returns the number of components visited by
+     * {@link ResourceMap#injectComponents injectComponents}, and the
+     * other injection methods, of the ResourceMap.  Subtrees that are
+     * pruned, see {@link ResourceMap#INJECT_CHILDREN_PROPERTY}, aren't
+     * visited.
+     *
+     * @return the number of components visited
+     * @see #getComponentsInjected
+     */
+    public long getComponentsVisited() {
+        return componentsVisited;
+    }
+
+    /**
+     * Returns the number of visited components that had at least one
+     * property defined by a resource.
+     *
+     * @return the number of components injected
+     * @see #getComponentsVisited
+     */
+    public long getComponentsInjected() {
+        return componentsInjected;
+    }
+
+    /**
+     * Returns the names of the ResourceMap's resources that have been read.
+     *
+     * @return the names of the resources that were read
+     */
+    public Set<String> getReadKeys() {
+        return readKeys;
+    }
+
+    /**
+     * Returns the names of the ResourceMap's resources that haven't been
+     * read since instrumentation was enabled.
+     *
+     * @return the names of the resources that weren't read
+     */
+    public Set<String> getUnusedKeys() {
+        return unusedKeys;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s lookups=%d hits=%d chainDepth=%d conversions=%s iconBytesDecoded=%d"
+                + " componentsVisited=%d componentsInjected=%d unusedKeys=%d]",
+                getClass().getSimpleName(), bundleNames, lookupCount, hitCount, chainDepth,
+                conversionCounts, iconBytesDecoded, componentsVisited, componentsInjected, unusedKeys.size());
+    }
+}
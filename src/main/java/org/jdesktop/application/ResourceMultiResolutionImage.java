@@ -0,0 +1,78 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import java.awt.Dimension;
+import java.awt.Image;
+import java.awt.image.AbstractMultiResolutionImage;
+import java.awt.image.ImageObserver;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An internal helper class: an image resource, like {@code icon.png},
+ * together with its HiDPI variants, like {@code icon@1.5x.png} and
+ * {@code icon@2x.png}.  Variants are loaded with the
+ * {@link ResourceImageCache} when they're first drawn, so only the
+ * variants that match the scale of the screens the image is drawn on
+ * are decoded.  The image's size is the size of the base image, read
+ * from its header if possible.
+ */
+final class ResourceMultiResolutionImage extends AbstractMultiResolutionImage {
+
+    private final ResourceImageCache cache;
+    private final URL[] urls;        // the base image first
+    private final double[] scales;   // in increasing order, scales[0] == 1
+    private final Dimension size;    // null if the header couldn't be read
+
+    ResourceMultiResolutionImage(ResourceImageCache cache, URL[] urls, double[] scales, Dimension size) {
+        this.cache = cache;
+        this.urls = urls;
+        this.scales = scales;
+        this.size = size;
+    }
+
+    @Override
+    public int getWidth(ImageObserver observer) {
+        return (size != null) ? size.width : super.getWidth(observer);
+    }
+
+    @Override
+    public int getHeight(ImageObserver observer) {
+        return (size != null) ? size.height : super.getHeight(observer);
+    }
+
+    @Override
+    protected Image getBaseImage() {
+        return cache.getSingleResolutionImage(urls[0]);
+    }
+
+    /* Returns the smallest variant that's at least as large as the
+     * destination, or the largest variant.
+     */
+    @Override
+    public Image getResolutionVariant(double destImageWidth, double destImageHeight) {
+        int width = getWidth(null);
+        int height = getHeight(null);
+        if ((width <= 0) || (height <= 0)) {
+            return getBaseImage();
+        }
+        double scale = Math.max(destImageWidth / width, destImageHeight / height);
+        int i = 0;
+        while ((i < scales.length - 1) && (scales[i] < scale - 0.01)) {
+            i += 1;
+        }
+        return cache.getSingleResolutionImage(urls[i]);
+    }
+
+    @Override
+    public List<Image> getResolutionVariants() {
+        List<Image> variants = new ArrayList<Image>(urls.length);
+        for (URL url : urls) {
+            variants.add(cache.getSingleResolutionImage(url));
+        }
+        return variants;
+    }
+}
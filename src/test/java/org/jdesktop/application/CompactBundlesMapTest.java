@@ -0,0 +1,69 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Test the CompactBundlesMap class.
+ */
+public class CompactBundlesMapTest
+{
+    private Map<String, Object> entries(int n)
+    {
+        Map<String, Object> entries = new HashMap<String, Object>();
+        for (int i = 0; i < n; i++)
+        {
+            entries.put("key" + i, "value é中 " + i);
+        }
+        entries.put("bytes", new byte[] {1, 2, 3});
+        entries.put("integer", 123);
+        return entries;
+    }
+
+    @Test
+    public void testSameEntries()
+    {
+        for (int n : new int[] {0, 1, 5, 1000})
+        {
+            Map<String, Object> entries = entries(n);
+            Map<String, Object> map = CompactBundlesMap.of(entries);
+            assertEquals(entries.size(), map.size());
+            assertEquals(entries.keySet(), new HashSet<String>(map.keySet()));
+            for (Map.Entry<String, Object> entry : entries.entrySet())
+            {
+                assertTrue(map.containsKey(entry.getKey()));
+                if (entry.getValue() instanceof byte[])
+                {
+                    assertSame(entry.getValue(), map.get(entry.getKey()));
+                }
+                else
+                {
+                    assertEquals(entry.getValue(), map.get(entry.getKey()));
+                }
+            }
+            assertNull(map.get("noSuchKey"));
+            assertFalse(map.containsKey("noSuchKey"));
+        }
+    }
+
+    @Test
+    public void testPut()
+    {
+        Map<String, Object> map = CompactBundlesMap.of(entries(10));
+        assertEquals("value é中 3", map.put("key3", "new value"));
+        assertEquals("new value", map.get("key3"));
+        assertNull(map.put("newKey", "newValue"));
+        assertEquals("newValue", map.get("newKey"));
+        assertEquals(13, map.size());
+        assertEquals(13, new HashSet<String>(map.keySet()).size());
+        assertTrue(map.keySet().contains("newKey"));
+        assertEquals("new value", new HashMap<String, Object>(map).get("key3"));
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+/**
+ * Test the ResourceBundleIndex class.
+ * <p>
+ * The index of the ResourceMapTest bundles must resolve the same keys
+ * and values, for all locales, as ResourceBundle.getBundle.
+ */
+public class ResourceBundleIndexTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File testResourcesDirectory() throws Exception
+    {
+        URL url = getClass().getResource("resources/Basic.properties");
+        return new File(url.toURI()).getParentFile();
+    }
+
+    private ResourceBundleIndex index(File directory) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ResourceBundleIndex.write(directory, out);
+        return ResourceBundleIndex.read(out.toByteArray());
+    }
+
+    private Map<String, Object> getBundleMap(String baseName, Locale locale)
+    {
+        return getBundleMap(baseName, locale, getClass().getClassLoader());
+    }
+
+    private Map<String, Object> getBundleMap(String baseName, Locale locale, ClassLoader classLoader)
+    {
+        Map<String, Object> map = new HashMap<String, Object>();
+        ResourceBundle bundle = ResourceBundle.getBundle(baseName, locale, classLoader);
+        for (Enumeration<String> keys = bundle.getKeys(); keys.hasMoreElements();)
+        {
+            String key = keys.nextElement();
+            map.put(key, bundle.getObject(key));
+        }
+        return map;
+    }
+
+    @Test
+    public void testIndexMatchesResourceBundle() throws Exception
+    {
+        ResourceBundleIndex index = index(testResourcesDirectory());
+        ClassLoader classLoader = getClass().getClassLoader();
+        String resourcesDir = getClass().getPackage().getName().replace('.', '/') + "/resources/";
+        String packageName = getClass().getPackage().getName() + ".resources.";
+        String[] baseNames = {"Basic", "Basic_WindowsXP", "MultiBundle", "MultiBundle_AllLocales", "SimpleApplication", "SimpleApplication_win"};
+        Locale[] locales = {Locale.getDefault(), Locale.ROOT, new Locale("zz"), Locale.GERMAN, Locale.ENGLISH};
+        for (String baseName : baseNames)
+        {
+            for (Locale locale : locales)
+            {
+                Map<String, Object> map = new HashMap<String, Object>();
+                assertTrue(index.populate(classLoader, resourcesDir, baseName, locale, map));
+                assertEquals(baseName + " " + locale, getBundleMap(packageName + baseName, locale), map);
+            }
+        }
+    }
+
+    private void write(File file, String contents) throws IOException
+    {
+        file.getParentFile().mkdirs();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))
+        {
+            writer.write(contents);
+        }
+    }
+
+    @Test
+    public void testClassBundlesNotIndexed() throws Exception
+    {
+        File directory = temporaryFolder.newFolder();
+        write(new File(directory, "Strings.properties"), "hello = Hello");
+        write(new File(directory, "Strings_de.class"), "");
+        ResourceBundleIndex index = index(directory);
+        Map<String, Object> map = new HashMap<String, Object>();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {directory.toURI().toURL()}, null))
+        {
+            assertFalse(index.populate(classLoader, "", "Strings", Locale.GERMAN, map));
+            assertTrue(map.isEmpty());
+            assertTrue(index.populate(classLoader, "", "Strings", Locale.ENGLISH, map));
+            assertEquals("Hello", map.get("hello"));
+        }
+    }
+
+    @Test
+    public void testUnindexedLanguagePack() throws Exception
+    {
+        /* The application's resources are indexed, the German bundle is
+         * in a language pack that isn't, the French one in a language
+         * pack with its own index.
+         */
+        File application = temporaryFolder.newFolder();
+        write(new File(application, "indextest/resources/Strings.properties"), "hello = Hello");
+        ResourceBundleIndex.main(new String[] {application.getPath()});
+        File germanPack = temporaryFolder.newFolder();
+        write(new File(germanPack, "indextest/resources/Strings_de.properties"), "hello = Hallo");
+        File frenchPack = temporaryFolder.newFolder();
+        write(new File(frenchPack, "indextest/resources/Strings_fr.properties"), "hello = Bonjour");
+        ResourceBundleIndex.main(new String[] {frenchPack.getPath()});
+        URL[] urls = {application.toURI().toURL(), germanPack.toURI().toURL(), frenchPack.toURI().toURL()};
+        try (URLClassLoader classLoader = new URLClassLoader(urls, null))
+        {
+            String resourcesDir = "indextest/resources/";
+            ResourceBundleIndex index = ResourceBundleIndex.forDirectory(classLoader, resourcesDir);
+            Map<String, Object> map = new HashMap<String, Object>();
+            assertFalse(index.populate(classLoader, resourcesDir, "Strings", Locale.GERMAN, map));
+            assertTrue(map.isEmpty());
+            assertTrue(index.populate(classLoader, resourcesDir, "Strings", Locale.FRENCH, map));
+            assertEquals("Bonjour", map.get("hello"));
+            map.clear();
+            assertTrue(index.populate(classLoader, resourcesDir, "Strings", Locale.ITALIAN, map));
+            assertEquals(getBundleMap("indextest.resources.Strings", Locale.ITALIAN, classLoader), map);
+            map.clear();
+            assertTrue(index.populate(classLoader, resourcesDir, "Strings", Locale.ROOT, map));
+            assertEquals("Hello", map.get("hello"));
+            Locale defaultLocale = Locale.getDefault();
+            try
+            {
+                Locale.setDefault(Locale.GERMAN);
+                ResourceMap rm = new ResourceMap(null, classLoader, "indextest.resources.Strings");
+                assertEquals("Hallo", rm.getString("hello"));
+            }
+            finally
+            {
+                Locale.setDefault(defaultLocale);
+            }
+        }
+    }
+
+    @Test
+    public void testResourceMapUsesIndex() throws Exception
+    {
+        File root = temporaryFolder.newFolder();
+        File resourcesDirectory = new File(root, "indextest/resources");
+        File bundleFile = new File(resourcesDirectory, "Strings.properties");
+        write(bundleFile, "hello = Hello from the index");
+        ResourceBundleIndex.main(new String[] {root.getPath()});
+        assertTrue(new File(resourcesDirectory, ResourceBundleIndex.INDEX_FILE_NAME).isFile());
+        write(bundleFile, "hello = Hello from the properties file\nworld = World");
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {root.toURI().toURL()}, null))
+        {
+            ResourceMap rm = new ResourceMap(null, classLoader, "indextest.resources.Strings");
+            assertEquals("Hello from the index", rm.getString("hello"));
+            assertFalse(rm.containsKey("world"));
+        }
+    }
+
+    @Test
+    public void testMissingBundlesRemembered() throws Exception
+    {
+        File root = temporaryFolder.newFolder();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {root.toURI().toURL()}, null))
+        {
+            long missingBundleCount = ResourceBundleIndex.getMissingBundleCount();
+            long skippedMissCount = ResourceBundleIndex.getSkippedMissCount();
+            assertNull(new ResourceMap(null, classLoader, "nosuch.resources.Strings").getString("hello"));
+            assertEquals(missingBundleCount + 1, ResourceBundleIndex.getMissingBundleCount());
+            assertNull(new ResourceMap(null, classLoader, "nosuch.resources.Strings").getString("hello"));
+            assertEquals(missingBundleCount + 1, ResourceBundleIndex.getMissingBundleCount());
+            assertEquals(skippedMissCount + 1, ResourceBundleIndex.getSkippedMissCount());
+        }
+    }
+}
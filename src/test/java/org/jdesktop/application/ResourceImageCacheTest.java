@@ -0,0 +1,295 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.MultiResolutionImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+/**
+ * Test the ResourceImageCache class.
+ */
+public class ResourceImageCacheTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private URL imageURL(String name)
+    {
+        URL url = getClass().getResource("resources/" + name);
+        assertNotNull(name, url);
+        return url;
+    }
+
+    @Test
+    public void testHitsAndMisses()
+    {
+        ResourceImageCache cache = new ResourceImageCache();
+        Image image = cache.getImage(imageURL("black1x1.png"));
+        assertEquals(1, image.getWidth(null));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(4, cache.getSize());
+        assertSame(image, cache.getImage(imageURL("black1x1.png")));
+        ImageIcon icon = cache.getImageIcon(imageURL("black1x1.png"));
+        assertSame(image, icon.getImage());
+        assertEquals(imageURL("black1x1.png").toExternalForm(), icon.getDescription());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        cache.getImage(imageURL("black1x1.png"));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testEviction()
+    {
+        ResourceImageCache cache = new ResourceImageCache();
+        cache.setMaximumSize(4);
+        Image image = cache.getImage(imageURL("black1x1.png"));
+        Image otherImage = cache.getImage(imageURL("othericons/cut.png"));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(4L * otherImage.getWidth(null) * otherImage.getHeight(null), cache.getSize());
+        // the evicted image is softly reachable, and strongly reachable from this test
+        assertSame(image, cache.getImage(imageURL("black1x1.png")));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getEvictionCount());
+        assertEquals(4, cache.getSize());
+    }
+
+    @Test
+    public void testDeferredLoading()
+    {
+        ResourceImageCache cache = new ResourceImageCache();
+        cache.setDeferredLoading(true);
+        ImageIcon icon = cache.getImageIcon(imageURL("othericons/cut.png"));
+        assertTrue(icon instanceof DeferredImageIcon);
+        assertFalse(((DeferredImageIcon) icon).isLoaded());
+        assertTrue(icon.getIconWidth() > 0);
+        assertTrue(icon.getIconHeight() > 0);
+        assertEquals(0, cache.getMissCount());
+        BufferedImage buffer = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+        Graphics g = buffer.createGraphics();
+        icon.paintIcon(null, g, 0, 0);
+        g.dispose();
+        assertTrue(((DeferredImageIcon) icon).isLoaded());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(icon.getImage().getWidth(null), icon.getIconWidth());
+        // cached images aren't deferred
+        assertFalse(cache.getImageIcon(imageURL("othericons/cut.png")) instanceof DeferredImageIcon);
+    }
+
+    @Test
+    public void testPrefetching() throws Exception
+    {
+        ResourceImageCache cache = new ResourceImageCache();
+        cache.setDeferredLoading(true);
+        cache.setPrefetching(true);
+        DeferredImageIcon icon = (DeferredImageIcon) cache.getImageIcon(imageURL("black1x1.png"));
+        for (int i = 0; (i < 100) && !icon.isLoaded(); i++)
+        {
+            Thread.sleep(50);
+        }
+        assertTrue(icon.isLoaded());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    private void writeImage(File file, int size) throws Exception
+    {
+        ImageIO.write(new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB), "png", file);
+    }
+
+    @Test
+    public void testMultiResolutionVariants() throws Exception
+    {
+        File directory = temporaryFolder.newFolder();
+        writeImage(new File(directory, "icon.png"), 2);
+        writeImage(new File(directory, "icon@2x.png"), 4);
+        writeImage(new File(directory, "plain.png"), 2);
+        URL url = new File(directory, "icon.png").toURI().toURL();
+        ResourceImageCache cache = new ResourceImageCache();
+        assertFalse(cache.isMultiResolution());
+        assertFalse(cache.getImage(url) instanceof MultiResolutionImage);
+        cache.clear();
+        cache.setMultiResolution(true);
+        long missCount = cache.getMissCount();
+        Image image = cache.getImage(url);
+        assertTrue(image instanceof MultiResolutionImage);
+        assertEquals(2, image.getWidth(null));
+        assertEquals(missCount, cache.getMissCount());
+        Image variant = ((MultiResolutionImage) image).getResolutionVariant(4, 4);
+        assertEquals(4, variant.getWidth(null));
+        assertEquals(missCount + 1, cache.getMissCount());
+        assertSame(variant, ((MultiResolutionImage) cache.getImage(url)).getResolutionVariant(3, 3));
+        assertEquals(2, ((MultiResolutionImage) image).getResolutionVariant(2, 2).getWidth(null));
+        assertEquals(missCount + 2, cache.getMissCount());
+        ImageIcon icon = cache.getImageIcon(url);
+        assertEquals(2, icon.getIconWidth());
+
+        assertFalse(cache.getImage(new File(directory, "plain.png").toURI().toURL()) instanceof MultiResolutionImage);
+        cache.setMultiResolution(false);
+        assertFalse(cache.getImage(url) instanceof MultiResolutionImage);
+    }
+
+    @Test
+    public void testMultiResolutionIcons() throws Exception
+    {
+        File root = temporaryFolder.newFolder();
+        File resourcesDirectory = new File(root, "hidpitest/resources");
+        resourcesDirectory.mkdirs();
+        writeImage(new File(resourcesDirectory, "icon.png"), 2);
+        writeImage(new File(resourcesDirectory, "icon@2x.png"), 4);
+        Files.write(new File(resourcesDirectory, "Icons.properties").toPath(),
+                "icon = icon.png\n".getBytes(StandardCharsets.UTF_8));
+        ResourceImageCache cache = ResourceImageCache.getInstance();
+        cache.setMultiResolution(true);
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {root.toURI().toURL()}, null))
+        {
+            ResourceMap rm = new ResourceMap(null, classLoader, "hidpitest.resources.Icons");
+            long missCount = cache.getMissCount();
+            long size = cache.getSize();
+            ImageIcon icon = rm.getImageIcon("icon");
+            assertTrue(rm.getIcon("icon") instanceof ImageIcon);
+            assertTrue(icon.getImage() instanceof MultiResolutionImage);
+            assertEquals(2, icon.getIconWidth());
+            assertEquals(2, icon.getIconHeight());
+            // creating the icons doesn't decode anything
+            assertEquals(missCount, cache.getMissCount());
+            assertEquals(size, cache.getSize());
+
+            // painting the icon at 200% only decodes the @2x variant
+            BufferedImage destination = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = destination.createGraphics();
+            try
+            {
+                g.scale(2, 2);
+                icon.paintIcon(null, g, 0, 0);
+            }
+            finally
+            {
+                g.dispose();
+            }
+            assertEquals(missCount + 1, cache.getMissCount());
+            assertEquals(size + 4 * 4 * 4, cache.getSize());
+        }
+        finally
+        {
+            cache.setMultiResolution(false);
+            cache.clear();
+        }
+    }
+
+    @Test
+    public void testMultiResolutionVariantsInJar() throws Exception
+    {
+        File directory = temporaryFolder.newFolder();
+        writeImage(new File(directory, "icon.png"), 2);
+        writeImage(new File(directory, "icon@1.5x.png"), 3);
+        File jarFile = new File(temporaryFolder.newFolder(), "images.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile)))
+        {
+            for (String name : new String[] {"icon.png", "icon@1.5x.png"})
+            {
+                out.putNextEntry(new JarEntry("images/" + name));
+                out.write(Files.readAllBytes(new File(directory, name).toPath()));
+                out.closeEntry();
+            }
+        }
+        ResourceImageCache cache = new ResourceImageCache();
+        cache.setMultiResolution(true);
+        Image image = cache.getImage(new URL("jar:" + jarFile.toURI() + "!/images/icon.png"));
+        assertTrue(image instanceof MultiResolutionImage);
+        assertEquals(2, ((MultiResolutionImage) image).getResolutionVariants().size());
+        assertEquals(3, ((MultiResolutionImage) image).getResolutionVariant(3, 3).getWidth(null));
+    }
+
+    @Test
+    public void testAtlasIcons() throws Exception
+    {
+        File root = temporaryFolder.newFolder();
+        File resourcesDirectory = new File(root, "atlastest/resources");
+        resourcesDirectory.mkdirs();
+        BufferedImage sheet = new BufferedImage(4, 2, BufferedImage.TYPE_INT_ARGB);
+        Graphics g = sheet.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 2, 2);
+        g.setColor(Color.BLUE);
+        g.fillRect(2, 0, 2, 2);
+        g.dispose();
+        ImageIO.write(sheet, "png", new File(resourcesDirectory, "sheet.png"));
+        String bundle = "Atlas.sheet = sheet.png\n"
+                + "Atlas.sheet.red = 0, 0, 2, 2\n"
+                + "Atlas.sheet.blue = 2, 0, 2, 2\n"
+                + "Atlas.sheet.outside = 3, 0, 2, 2\n"
+                + "redIcon = atlas:sheet.red\n"
+                + "blueIcon = atlas:sheet.blue\n"
+                + "outsideIcon = atlas:sheet.outside\n"
+                + "missingIcon = atlas:nosuchsheet.red\n";
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(new File(resourcesDirectory, "Icons.properties")), StandardCharsets.UTF_8))
+        {
+            writer.write(bundle);
+        }
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {root.toURI().toURL()}, null))
+        {
+            ResourceMap rm = new ResourceMap(null, classLoader, "atlastest.resources.Icons");
+            ResourceImageCache cache = ResourceImageCache.getInstance();
+            long missCount = cache.getMissCount();
+            ImageIcon redIcon = rm.getImageIcon("redIcon");
+            ImageIcon blueIcon = rm.getImageIcon("blueIcon");
+            assertEquals(2, redIcon.getIconWidth());
+            assertEquals(2, blueIcon.getIconHeight());
+            assertEquals(Color.RED.getRGB(), ((BufferedImage) redIcon.getImage()).getRGB(1, 1));
+            assertEquals(Color.BLUE.getRGB(), ((BufferedImage) blueIcon.getImage()).getRGB(0, 0));
+            // one miss for the atlas, one per region
+            assertEquals(missCount + 3, cache.getMissCount());
+            ResourceMap otherRM = new ResourceMap(null, classLoader, "atlastest.resources.Icons");
+            assertSame(redIcon.getImage(), otherRM.getObject("redIcon", Image.class));
+            for (String key : new String[] {"outsideIcon", "missingIcon"})
+            {
+                try
+                {
+                    rm.getImageIcon(key);
+                    fail(key);
+                }
+                catch (ResourceMap.LookupException expected)
+                {
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testResourceMapsShareImages()
+    {
+        String bundleName = getClass().getPackage().getName() + ".resources.Basic";
+        ResourceMap rm1 = new ResourceMap(null, getClass().getClassLoader(), bundleName);
+        ResourceMap rm2 = new ResourceMap(null, getClass().getClassLoader(), bundleName);
+        ImageIcon icon1 = rm1.getImageIcon("black1x1Icon");
+        ImageIcon icon2 = rm2.getImageIcon("black1x1Icon");
+        assertNotSame(icon1, icon2);
+        assertSame(icon1.getImage(), icon2.getImage());
+        assertSame(icon1.getImage(), rm2.getObject("AbsoluteBlack1x1Icon", Image.class));
+    }
+}
@@ -6,8 +6,33 @@
 
 package org.jdesktop.application;
 
+import java.awt.Dimension;
+import java.awt.Image;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import static org.junit.Assert.*;
 
 /**
@@ -18,7 +43,8 @@ import static org.junit.Assert.*;
 
 public class ResourceManagerTest
 {
-
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
     class TestResourceManager extends ResourceManager
     {
@@ -41,6 +67,376 @@ public class ResourceManagerTest
         // [TBD]
     }
 
+    @Test
+    public void testPreload() throws Exception {
+        TestResourceManager manager = resourceManager();
+        List<Class<?>> classes = Arrays.<Class<?>>asList(TaskTest.DoNothingTask.class, getClass());
+        manager.preload(classes).get(10, TimeUnit.SECONDS);
+        ResourceMap rm = manager.getResourceMap(TaskTest.DoNothingTask.class);
+        assertSame(rm, manager.getResourceMap(TaskTest.DoNothingTask.class));
+        assertEquals("the title", rm.getString("DoNothingTask.title"));
+        assertSame(manager.getResourceMap(), rm.getParent());
+    }
+
+    private TestResourceManager startupCacheResourceManager(File directory) {
+        TestResourceManager manager = resourceManager();
+        manager.getContext().getLocalStorage().setDirectory(directory);
+        manager.setStartupCacheEnabled(true);
+        return manager;
+    }
+
+    private void writeStartupCache(File file, ResourceMapCache cache, ResourceMap rm, String title) throws Exception {
+        assertTrue(cache.putBundlesMap(rm.getClassLoader(), rm.getResourcesDir(), rm.getBundleNames(),
+                Collections.singletonMap("DoNothingTask.title", title)));
+        try (OutputStream out = new FileOutputStream(file)) {
+            cache.write(out);
+        }
+    }
+
+    @Test
+    public void testStartupCache() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        TestResourceManager manager = startupCacheResourceManager(directory);
+        assertTrue(manager.isStartupCacheEnabled());
+        ResourceMap rm = manager.getResourceMap(TaskTest.DoNothingTask.class);
+        assertEquals("the title", rm.getString("DoNothingTask.title"));
+        manager.saveStartupCache();
+
+        Locale locale = Locale.getDefault();
+        File file = new File(directory, ResourceMapCache.fileName(locale, manager.getPlatform()));
+        ResourceMapCache cache = ResourceMapCache.read(Files.readAllBytes(file.toPath()), locale, manager.getPlatform());
+        assertNotNull(cache);
+        assertEquals(rm.getResourceKeySet(), cache.getBundlesMap(rm.getClassLoader(), rm.getBundleNames(), locale, manager.getPlatform()).keySet());
+
+        // another class loader, with the same bundle names, doesn't share the snapshot
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {directory.toURI().toURL()}, null)) {
+            assertNull(cache.getBundlesMap(classLoader, rm.getBundleNames(), locale, manager.getPlatform()));
+        }
+
+        // the next run reads its bundles from the snapshot
+        writeStartupCache(file, cache, rm, "the cached title");
+        rm = startupCacheResourceManager(directory).getResourceMap(TaskTest.DoNothingTask.class);
+        assertEquals("the cached title", rm.getString("DoNothingTask.title"));
+
+        // a snapshot is ignored if one of its files has changed
+        File bundleFile = new File(temporaryFolder.newFolder(), "Bundle.properties");
+        Files.write(bundleFile.toPath(), "a = b".getBytes(StandardCharsets.UTF_8));
+        ResourceMapCache staleCache = new ResourceMapCache(locale, manager.getPlatform());
+        staleCache.addSource(bundleFile);
+        writeStartupCache(file, staleCache, rm, "the stale title");
+        Files.write(bundleFile.toPath(), "a = changed".getBytes(StandardCharsets.UTF_8));
+        rm = startupCacheResourceManager(directory).getResourceMap(TaskTest.DoNothingTask.class);
+        assertEquals("the title", rm.getString("DoNothingTask.title"));
+    }
+
+    @Test
+    public void testStartupCacheApplicationResourceMap() throws Exception {
+        /* Application.launch() loads the application's ResourceMap,
+         * which locates LocalStorage, before it enables the startup cache
+         */
+        File directory = temporaryFolder.newFolder();
+        TestResourceManager manager = resourceManager();
+        manager.getContext().getLocalStorage().setDirectory(directory);
+        ResourceMap appResourceMap = manager.getResourceMap();
+        assertEquals("Busy", appResourceMap.getString("BlockingDialog.title"));
+        ResourceMap modifiedResourceMap = manager.getResourceMap(TaskTest.DoNothingTask.class);
+        modifiedResourceMap.putResource("DoNothingTask.description", "modified");
+
+        Locale locale = Locale.getDefault();
+        ResourceMapCache cache = new ResourceMapCache(locale, manager.getPlatform());
+        assertTrue(cache.putBundlesMap(appResourceMap.getClassLoader(), appResourceMap.getResourcesDir(),
+                appResourceMap.getBundleNames(), Collections.singletonMap("BlockingDialog.title", "Cached")));
+        File file = new File(directory, ResourceMapCache.fileName(locale, manager.getPlatform()));
+        writeStartupCache(file, cache, modifiedResourceMap, "the cached title");
+
+        manager.setStartupCacheEnabled(true);
+        assertEquals("Cached", appResourceMap.getString("BlockingDialog.title"));
+        assertEquals("Cached", modifiedResourceMap.getString("BlockingDialog.title"));
+        // ResourceMaps changed with putResource keep their bundles
+        assertEquals("the title", modifiedResourceMap.getString("DoNothingTask.title"));
+        assertEquals("modified", modifiedResourceMap.getString("DoNothingTask.description"));
+    }
+
+    /* Its ResourceBundles are resources/LocaleChangeTest_en and _de
+     */
+    static class LocaleChangeTest
+    {
+    }
+
+    @Test
+    public void testSetLocale() throws Exception {
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.ENGLISH);
+            TestResourceManager manager = resourceManager();
+            ResourceMap rm = manager.getResourceMap(LocaleChangeTest.class);
+            JPanel panel = new JPanel();
+            JLabel greeting = new JLabel();
+            greeting.setName("greeting");
+            JLabel fixed = new JLabel();
+            fixed.setName("fixed");
+            panel.add(greeting);
+            panel.add(fixed);
+            rm.injectComponents(panel);
+            assertEquals("Hello", greeting.getText());
+            assertEquals("OK", fixed.getText());
+
+            // only resources whose values changed are injected again
+            fixed.setText("not injected");
+            manager.setLocale(Locale.GERMAN).get(10, TimeUnit.SECONDS);
+            assertEquals(Locale.GERMAN, manager.getLocale());
+            assertEquals("Hallo", greeting.getText());
+            assertEquals("not injected", fixed.getText());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    /* Its ResourceBundle, resources/HotReloadTest.properties, is
+     * written by testHotReload
+     */
+    static class HotReloadTest
+    {
+    }
+
+    /* Its ResourceMap's parent is HotReloadTest's, see testHotReloadParentKeys
+     */
+    static class HotReloadChild extends HotReloadTest
+    {
+    }
+
+    private static String labelText(final JLabel label) throws Exception {
+        final String[] text = new String[1];
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                text[0] = label.getText();
+            }
+        });
+        return text[0];
+    }
+
+    /* Writes the HotReloadTest bundle before hot reload is enabled, the
+     * bundle loaded by another test mustn't be found in ResourceBundle's cache
+     */
+    private void writeHotReloadBundle(File file, String... lines) throws Exception {
+        Files.write(file.toPath(), Arrays.asList(lines));
+        ResourceBundle.clearCache(getClass().getClassLoader());
+        ResourceBundleIndex.clearCaches(getClass().getClassLoader());
+    }
+
+    @Test
+    public void testHotReload() throws Exception {
+        TestResourceManager manager = resourceManager();
+        String resourcesDir = manager.getResourceMap(getClass()).getResourcesDir();
+        File directory = new File(getClass().getClassLoader().getResource(resourcesDir).toURI());
+        File file = new File(directory, "HotReloadTest.properties");
+        writeHotReloadBundle(file, "label.text = One", "other.text = Other");
+        try {
+            manager.setHotReloadEnabled(true);
+            assertTrue(manager.isHotReloadEnabled());
+            ResourceMap rm = manager.getResourceMap(HotReloadTest.class);
+            JPanel panel = new JPanel();
+            JLabel label = new JLabel();
+            label.setName("label");
+            JLabel other = new JLabel();
+            other.setName("other");
+            panel.add(label);
+            panel.add(other);
+            rm.injectComponents(panel);
+            assertEquals("One", label.getText());
+            other.setText("not injected");
+
+            Files.write(file.toPath(), Arrays.asList("label.text = Two", "other.text = Other"));
+            long deadline = System.currentTimeMillis() + 10000;
+            while (!"Two".equals(labelText(label)) && (System.currentTimeMillis() < deadline)) {
+                Thread.sleep(50);
+            }
+            assertEquals("Two", labelText(label));
+            assertEquals("Two", rm.getString("label.text"));
+            assertEquals("not injected", labelText(other));
+        } finally {
+            manager.setHotReloadEnabled(false);
+            file.delete();
+        }
+        assertFalse(manager.isHotReloadEnabled());
+    }
+
+    @Test
+    public void testHotReloadParentKeys() throws Exception {
+        // HotReloadChild's bundle is in another package, so it gets its own ResourceMap
+        TestResourceManager manager = new TestResourceManager() {
+            @Override
+            protected List<String> getClassBundleNames(Class cls) {
+                if (cls == HotReloadChild.class) {
+                    return Collections.singletonList("org.jdesktop.application.resources.child.HotReloadChild");
+                }
+                return super.getClassBundleNames(cls);
+            }
+        };
+        String resourcesDir = manager.getResourceMap(getClass()).getResourcesDir();
+        File directory = new File(getClass().getClassLoader().getResource(resourcesDir).toURI());
+        File file = new File(directory, "HotReloadTest.properties");
+        writeHotReloadBundle(file, "label.text = One");
+        try {
+            manager.setHotReloadEnabled(true);
+            ResourceMap rm = manager.getResourceMap(HotReloadChild.class, HotReloadTest.class);
+            assertTrue(rm.getParent().getBundleNames().get(0).endsWith("HotReloadTest"));
+            assertTrue(rm.getParent().keySet().contains("label.text"));
+            JPanel panel = new JPanel();
+            JLabel label = new JLabel();
+            label.setName("label");
+            JLabel added = new JLabel();
+            added.setName("added");
+            panel.add(label);
+            panel.add(added);
+            rm.injectComponents(panel);
+            assertEquals("One", label.getText());
+            assertFalse(rm.keySet().contains("added.text"));
+
+            // the parent gains a key, the child's key set and its components follow
+            Files.write(file.toPath(), Arrays.asList("label.text = One", "added.text = Added"));
+            long deadline = System.currentTimeMillis() + 10000;
+            while (!"Added".equals(labelText(added)) && (System.currentTimeMillis() < deadline)) {
+                Thread.sleep(50);
+            }
+            assertEquals("Added", labelText(added));
+            assertTrue(rm.keySet().contains("added.text"));
+        } finally {
+            manager.setHotReloadEnabled(false);
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testHotReloadClassLoaderUnloading() throws Exception {
+        TestResourceManager manager = resourceManager();
+        manager.setHotReloadEnabled(true);
+        try {
+            WeakReference<ClassLoader> classLoader = loadResourceMap(manager);
+            for (int i = 0; (i < 100) && (classLoader.get() != null); i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            assertNull("hot reload watcher pins the class loader", classLoader.get());
+        } finally {
+            manager.setHotReloadEnabled(false);
+        }
+    }
+
+    private WeakReference<ClassLoader> loadResourceMap(TestResourceManager manager) throws Exception {
+        URL classes = getClass().getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader classLoader = new URLClassLoader(new URL[] {classes}, null);
+        Class<?> cls = classLoader.loadClass(LocaleChangeTest.class.getName());
+        assertNotSame(LocaleChangeTest.class, cls);
+        ResourceMap rm = manager.getResourceMap(cls);
+        assertSame(rm, manager.getResourceMap(cls));
+        assertSame(classLoader, rm.getClassLoader());
+        rm.keySet();
+        return new WeakReference<ClassLoader>(classLoader);
+    }
+
+    @Test
+    public void testClassLoaderUnloading() throws Exception {
+        TestResourceManager manager = resourceManager();
+        WeakReference<ClassLoader> classLoader = loadResourceMap(manager);
+        for (int i = 0; (i < 100) && (classLoader.get() != null); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("ResourceMap cache pins the class loader", classLoader.get());
+        assertSame(manager.getResourceMap(LocaleChangeTest.class), manager.getResourceMap(LocaleChangeTest.class));
+    }
+
+    private WeakReference<ResourceManager> discardedResourceManager() {
+        TestResourceManager manager = resourceManager();
+        manager.getResourceMap(LocaleChangeTest.class);
+        manager.setApplicationBundleNames(null);  // replaces the ResourceMap cache
+        manager.getResourceMap(LocaleChangeTest.class);
+        return new WeakReference<ResourceManager>(manager);
+    }
+
+    @Test
+    public void testDiscardedManagerUnloading() throws Exception {
+        WeakReference<ResourceManager> manager = discardedResourceManager();
+        for (int i = 0; (i < 100) && (manager.get() != null); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("ResourceMap cache pins the ResourceManager", manager.get());
+    }
+
+    private static ResourceMapStatistics statistics(ResourceManager manager, ResourceMap rm) {
+        for (ResourceMapStatistics statistics : manager.getStatistics()) {
+            if (statistics.getBundleNames().equals(rm.getBundleNames())) {
+                return statistics;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testInstrumentation() throws Exception {
+        TestResourceManager manager = resourceManager();
+        ResourceMap rm = manager.getResourceMap(TaskTest.DoNothingTask.class);
+        assertTrue(manager.getStatistics().isEmpty());
+        manager.setInstrumentationEnabled(true);
+        assertTrue(manager.isInstrumentationEnabled());
+
+        assertEquals("the title", rm.getString("DoNothingTask.title"));
+        assertEquals("the title", rm.getString("DoNothingTask.title"));
+        assertNull(rm.getString("DoNothingTask.noSuchResource"));
+        assertEquals(Integer.valueOf(250), rm.getInteger("BlockingDialogTimer.delay"));
+        assertNotNull(rm.getIcon("cut.Action.icon"));
+
+        ResourceMapStatistics statistics = statistics(manager, rm);
+        assertEquals(5, statistics.getLookupCount());
+        assertEquals(4, statistics.getHitCount());
+        assertEquals(2, statistics.getChainDepth());
+        assertEquals(Collections.singleton("DoNothingTask.title"), statistics.getReadKeys());
+        assertTrue(statistics.getUnusedKeys().contains("DoNothingTask.description"));
+        assertFalse(statistics.getUnusedKeys().contains("DoNothingTask.title"));
+
+        // conversions are counted by the ResourceMap that defines the resource
+        ResourceMapStatistics appStatistics = statistics(manager, manager.getResourceMap());
+        String integerConverter = ResourceConverter.forType(Integer.class).getClass().getName();
+        assertEquals(Long.valueOf(1), appStatistics.getConversionCounts().get(integerConverter));
+        assertTrue(appStatistics.getConversionNanos().get(integerConverter) > 0);
+        assertEquals(16 * 16 * 4, appStatistics.getIconBytesDecoded());
+        assertTrue(appStatistics.getReadKeys().contains("cut.Action.icon"));
+
+        ObjectName name = manager.registerMXBean();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(5L, server.getAttribute(name, "LookupCount"));
+            assertTrue(server.getAttribute(name, "Statistics") instanceof CompositeData[]);
+            String report = (String) server.invoke(name, "unusedKeysReport", null, null);
+            assertTrue(report.contains("DoNothingTask.description"));
+            server.invoke(name, "resetStatistics", null, null);
+            assertEquals(0L, statistics(manager, rm).getLookupCount());
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+
+        manager.setInstrumentationEnabled(false);
+        assertTrue(manager.getStatistics().isEmpty());
+    }
+
+    @Test
+    public void testInstrumentationUndecodedImages() throws Exception {
+        ResourceMap rm = resourceManager().getResourceMap(TaskTest.DoNothingTask.class);
+        URL url = rm.getClassLoader().getResource(rm.getResourcesDir() + "black1x1.png");
+        Image image = new ResourceMultiResolutionImage(ResourceImageCache.getInstance(),
+                new URL[] {url}, new double[] {1.0}, new Dimension(1, 1));
+        ResourceMapInstrumentation instrumentation = new ResourceMapInstrumentation();
+        ResourceConverter converter = ResourceConverter.forType(Image.class);
+        instrumentation.converted(converter, 1L, image);
+        instrumentation.converted(converter, 1L, new ImageIcon(image));
+        ResourceMapStatistics statistics = instrumentation.getStatistics(rm, Collections.<String>emptySet());
+        assertEquals(0L, statistics.getIconBytesDecoded());
+        assertEquals(Long.valueOf(2), statistics.getConversionCounts().get(converter.getClass().getName()));
+    }
+
     @Test
     public void testCustomResourceFolder() {
         TestResourceManager manager = resourceManager();
@@ -0,0 +1,102 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * ResourceMapFootprintBenchmark.java - a heap size benchmark, not a JUnit test
+ *
+ * Measures the heap used by the flattened bundles of a synthetic
+ * localized application: 50,000 keys, each defined in a number of
+ * locales, stored as ConcurrentHashMaps, which is how ResourceMaps used
+ * to store them, and as CompactBundlesMaps.  Like ResourceBundles
+ * parsed from different files, each locale has its own copy of every
+ * key.  Heap usage is measured with Runtime.totalMemory/freeMemory
+ * after repeated garbage collections, so run it with a fixed heap:
+ * <pre>
+ * java -Xms1g -Xmx1g -cp target/classes:target/test-classes org.jdesktop.application.ResourceMapFootprintBenchmark [nKeys] [nLocales]
+ * </pre>
+ */
+public class ResourceMapFootprintBenchmark
+{
+    private static List<Map<String, Object>> bundles(int nKeys, int nLocales)
+    {
+        List<Map<String, Object>> bundles = new ArrayList<Map<String, Object>>(nLocales);
+        for (int locale = 0; locale < nLocales; locale++)
+        {
+            Map<String, Object> bundle = new HashMap<String, Object>();
+            for (int i = 0; i < nKeys; i++)
+            {
+                String key = new StringBuilder("View").append(i / 20).append(".component").append(i % 20).append(".text").toString();
+                bundle.put(key, "Localized text " + i + " for locale " + locale);
+            }
+            bundles.add(bundle);
+        }
+        return bundles;
+    }
+
+    private static long usedMemory()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++)
+        {
+            System.gc();
+            try
+            {
+                Thread.sleep(100);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    /* Returns the heap used, in bytes, by the maps created from bundles.
+     */
+    private static long footprint(List<Map<String, Object>> bundles, boolean compact)
+    {
+        List<Map<String, Object>> maps = new ArrayList<Map<String, Object>>(bundles.size());
+        long before = usedMemory();
+        for (Map<String, Object> bundle : bundles)
+        {
+            // copy the keys and values, so that the maps don't share them with bundles
+            Map<String, Object> copy = new HashMap<String, Object>();
+            for (Map.Entry<String, Object> entry : bundle.entrySet())
+            {
+                copy.put(new String(entry.getKey()), new String((String) entry.getValue()));
+            }
+            maps.add(compact ? CompactBundlesMap.of(copy) : new ConcurrentHashMap<String, Object>(copy));
+        }
+        long after = usedMemory();
+        if (maps.size() != bundles.size())
+        {
+            throw new AssertionError();
+        }
+        return after - before;
+    }
+
+    public static void main(String[] args)
+    {
+        int nKeys = (args.length > 0) ? Integer.parseInt(args[0]) : 50000;
+        int nLocales = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+        List<Map<String, Object>> bundles = bundles(nKeys, nLocales);
+        footprint(bundles, false); // warm up
+        footprint(bundles, true);
+        long concurrentHashMaps = footprint(bundles, false);
+        long compactBundlesMaps = footprint(bundles, true);
+        int nEntries = nKeys * nLocales;
+        System.out.println(String.format("%d keys, %d locales", nKeys, nLocales));
+        System.out.println(String.format("ConcurrentHashMap  %,12d bytes  %6.1f bytes/entry", concurrentHashMaps, (double) concurrentHashMaps / nEntries));
+        System.out.println(String.format("CompactBundlesMap  %,12d bytes  %6.1f bytes/entry", compactBundlesMaps, (double) compactBundlesMaps / nEntries));
+    }
+}
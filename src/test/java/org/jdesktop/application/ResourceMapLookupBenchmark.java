@@ -0,0 +1,104 @@
+/*
+ * Use is subject to license terms.
+ */
+package org.jdesktop.application;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * ResourceMapLookupBenchmark.java - a microbenchmark, not a JUnit test
+ *
+ * Measures ResourceMap lookup throughput as the number of threads
+ * that share one ResourceMap chain grows.  Lookups don't lock, so
+ * throughput should scale with the number of available processors.
+ * Run it with the test classpath:
+ * <pre>
+ * java -cp target/classes:target/test-classes org.jdesktop.application.ResourceMapLookupBenchmark [lookupsPerThread]
+ * </pre>
+ * This benchmark depends on the ResourceBundles used by ResourceMapTest:
+ * <pre>
+ * resources/Basic.properties
+ * resources/Parent.properties
+ * resources/Child.properties
+ * </pre>
+ */
+public class ResourceMapLookupBenchmark
+{
+    private static final String[] KEYS = {
+            "aStringResource", "integer123", "p1", "p6", "p10", "noSuchResource"
+    };
+
+    private static ResourceMap resourceMapChain()
+    {
+        String resourcesPackage = ResourceMapLookupBenchmark.class.getPackage().getName() + ".resources.";
+        ClassLoader classLoader = ResourceMapLookupBenchmark.class.getClassLoader();
+        ResourceMap basic = new ResourceMap(null, classLoader, resourcesPackage + "Basic");
+        ResourceMap child = new ResourceMap(basic, classLoader, resourcesPackage + "Child");
+        return new ResourceMap(child, classLoader, resourcesPackage + "Parent");
+    }
+
+    private static long lookups(ResourceMap rm, int n)
+    {
+        long found = 0;
+        for (int i = 0; i < n; i++)
+        {
+            if (rm.getObject(KEYS[i % KEYS.length], String.class) != null)
+            {
+                found += 1;
+            }
+        }
+        return found;
+    }
+
+    /* Returns the elapsed time, in nanoseconds, for nThreads threads
+     * to each perform n lookups.
+     */
+    private static long run(final ResourceMap rm, int nThreads, final int n) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try
+        {
+            List<Callable<Long>> workers = new ArrayList<Callable<Long>>();
+            for (int i = 0; i < nThreads; i++)
+            {
+                workers.add(new Callable<Long>()
+                {
+                    public Long call()
+                    {
+                        return lookups(rm, n);
+                    }
+                });
+            }
+            long start = System.nanoTime();
+            for (Future<Long> f : executor.invokeAll(workers))
+            {
+                f.get();
+            }
+            return System.nanoTime() - start;
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 2000000;
+        ResourceMap rm = resourceMapChain();
+        run(rm, 1, n); // warm up
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        System.out.println("threads  lookups/ms  (" + n + " lookups per thread)");
+        for (int nThreads = 1; nThreads <= maxThreads; nThreads *= 2)
+        {
+            long nanos = run(rm, nThreads, n);
+            double lookupsPerMs = (double) nThreads * n / (nanos / 1000000.0);
+            System.out.println(String.format("%7d  %10.0f", nThreads, lookupsPerMs));
+        }
+    }
+}
@@ -6,6 +6,7 @@
 package org.jdesktop.application;
 
 import org.jdesktop.application.ResourceConverter.ResourceConverterException;
+import org.jdesktop.application.utils.PlatformType;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -19,6 +20,8 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /*
  * ResourceMapTest.java - JUnit based test
@@ -389,6 +392,82 @@ public class ResourceMapTest
         assertTrue("getString(\"" + testAddResourceConverter + "\").value", b);
     }
 
+    private static class PriorityTestType
+    {
+    }
+
+    private static class PriorityTestResourceConverter extends ResourceConverter
+    {
+        PriorityTestResourceConverter()
+        {
+            super(PriorityTestType.class);
+        }
+
+        @Override
+        public Object parseString(String s, ResourceMap ignore)
+        {
+            return new PriorityTestType();
+        }
+    }
+
+    @Test
+    public void testRegisterResourceConverterPriority()
+    {
+        assertNull(ResourceConverter.forType(PriorityTestType.class));
+        ResourceConverter low = new PriorityTestResourceConverter();
+        ResourceConverter.register(low, ResourceConverter.DEFAULT_PRIORITY - 1);
+        assertSame(low, ResourceConverter.forType(PriorityTestType.class));
+        ResourceConverter first = new PriorityTestResourceConverter();
+        ResourceConverter.register(first);
+        assertSame(first, ResourceConverter.forType(PriorityTestType.class));
+        ResourceConverter.register(new PriorityTestResourceConverter());
+        assertSame(first, ResourceConverter.forType(PriorityTestType.class));
+        ResourceConverter high = new PriorityTestResourceConverter();
+        ResourceConverter.register(high, ResourceConverter.DEFAULT_PRIORITY + 1);
+        assertSame(high, ResourceConverter.forType(PriorityTestType.class));
+    }
+
+    private static class DefaultPriorityTestType
+    {
+    }
+
+    @Test
+    public void testRegisterResourceConverterAfterDefaults()
+    {
+        /* Converters registered with the default priority, e.g. the
+         * ServiceLoader providers, don't override the default ones,
+         * even the ones ResourceMap registers after them.
+         */
+        ResourceConverter colorConverter = ResourceConverter.forType(Color.class);
+        assertNotNull(colorConverter);
+        ResourceConverter.register(new ResourceConverter(Color.class) {
+            @Override
+            public Object parseString(String s, ResourceMap ignore)
+            {
+                return Color.RED;
+            }
+        });
+        assertSame(colorConverter, ResourceConverter.forType(Color.class));
+        ResourceConverter registered = new ResourceConverter(DefaultPriorityTestType.class) {
+            @Override
+            public Object parseString(String s, ResourceMap ignore)
+            {
+                return new DefaultPriorityTestType();
+            }
+        };
+        ResourceConverter.register(registered);
+        assertSame(registered, ResourceConverter.forType(DefaultPriorityTestType.class));
+        ResourceConverter builtIn = new ResourceConverter(DefaultPriorityTestType.class) {
+            @Override
+            public Object parseString(String s, ResourceMap ignore)
+            {
+                return new DefaultPriorityTestType();
+            }
+        };
+        ResourceConverter.registerDefault(builtIn);
+        assertSame(builtIn, ResourceConverter.forType(DefaultPriorityTestType.class));
+    }
+
     private ResourceMap childResourceMap()
     {
         String bundleBaseName = getClass().getPackage().getName() + ".resources.Child";
@@ -430,6 +509,63 @@ public class ResourceMapTest
         Set<String> shouldBeEmpty = new HashSet(keys);
         assertTrue("Should remove all keys", shouldBeEmpty.removeAll(Arrays.asList(expectedKeys)));
         assertEquals("Should (now) be an empty set", shouldBeEmpty.size(), 0);
+        // the keys defined by both ResourceMaps, p2 and p4, are iterated once
+        java.util.List<String> iteratedKeys = new ArrayList<String>(keys);
+        assertEquals(expectedKeys.length, iteratedKeys.size());
+        try
+        {
+            keys.add("p11");
+            fail("keySet() should be read-only");
+        }
+        catch (UnsupportedOperationException expected)
+        {
+        }
+    }
+
+    @Test
+    public void testFlattenedParentChild()
+    {
+        ResourceMap rm = parentChildResourceMap();
+        ResourceMap flatRM = parentChildResourceMap();
+        flatRM.setFlattened(true);
+        assertTrue(flatRM.isFlattened());
+        assertEquals(rm.keySet(), flatRM.keySet());
+        for (String key : rm.keySet())
+        {
+            assertEquals(key, rm.getString(key), flatRM.getString(key));
+            assertTrue(key, flatRM.containsKey(key));
+        }
+        assertEquals("Parentp2", flatRM.getString("p2"));
+        assertFalse(flatRM.containsKey("noSuchKey"));
+        assertNull(flatRM.getString("noSuchKey"));
+        // new keys, in the parent, are visible in the rebuilt view
+        flatRM.getParent().putResource("noSuchKey", "defined");
+        assertTrue(flatRM.containsKey("noSuchKey"));
+        assertTrue(flatRM.keySet().contains("noSuchKey"));
+        assertEquals("defined", flatRM.getString("noSuchKey"));
+    }
+
+    @Test
+    public void testFlattenedChainSharing()
+    {
+        ClassLoader classLoader = getClass().getClassLoader();
+        String packageName = getClass().getPackage().getName();
+        ResourceMap root = basicResourceMap();
+        ResourceMap middle = new ResourceMap(root, classLoader, packageName + ".resources.Child");
+        ResourceMap leaf = new ResourceMap(middle, classLoader, packageName + ".resources.Parent");
+        Set<String> keys = new HashSet<String>(leaf.keySet());
+        for (ResourceMap rm : new ResourceMap[]{root, middle, leaf})
+        {
+            rm.setFlattened(true);
+        }
+        assertEquals(keys, leaf.keySet());
+        assertEquals(keys.size(), leaf.keySet().size());
+        assertEquals("Parentp2", leaf.getString("p2"));
+        assertEquals("p1", leaf.getString("p1"));
+        // the middle and leaf ResourceMaps share the root's merged map, and only store p1 ... p10
+        assertEquals(root.keySet().size(), root.getFlatChainEntries());
+        assertEquals(5, middle.getFlatChainEntries());
+        assertEquals(10, leaf.getFlatChainEntries());
     }
 
     private ResourceMap injectionResourceMap(String bundleSuffix)
@@ -471,6 +607,128 @@ public class ResourceMapTest
         assertNull(labelNullText.getText());
     }
 
+    @Test
+    public void testInjectComponentNameMatching()
+    {
+        ResourceMap rm = injectionResourceMap("Injection");
+        JMenu menu = new JMenu();
+        menu.setName("Edit.menu");
+        rm.injectComponent(menu);
+        assertEquals("menu.getMnemonic()", 68, menu.getMnemonic());
+        // "Edit.menu.mnemonic" names component "Edit.menu", not "Edit"
+        JMenu prefixMenu = new JMenu("unchanged");
+        prefixMenu.setName("Edit");
+        rm.injectComponent(prefixMenu);
+        assertEquals("prefixMenu.getMnemonic()", 0, prefixMenu.getMnemonic());
+        assertEquals("prefixMenu.getText()", "unchanged", prefixMenu.getText());
+        JLabel unknownLabel = new JLabel("unchanged");
+        unknownLabel.setName("noSuchComponent");
+        rm.injectComponent(unknownLabel);
+        assertEquals("unknownLabel.getText()", "unchanged", unknownLabel.getText());
+    }
+
+    private static class CustomLabel extends JLabel
+    {
+        private String caption;
+
+        public String getCaption()
+        {
+            return caption;
+        }
+
+        public void setCaption(String caption)
+        {
+            this.caption = caption;
+        }
+    }
+
+    @Test
+    public void testInjectComponentSubclassProperties()
+    {
+        ResourceMap rm = injectionResourceMap("Injection");
+        for (int i = 0; i < 2; i++)
+        {
+            CustomLabel label = new CustomLabel();
+            label.setName("customLabel");
+            rm.injectComponent(label);
+            assertEquals("label.getCaption()", "Custom caption", label.getCaption());
+            assertEquals("label.getText()", "Custom label", label.getText());
+            assertEquals("label.getDisplayedMnemonicIndex()", 7, label.getDisplayedMnemonicIndex());
+        }
+    }
+
+    private static class SetterError extends Error
+    {
+    }
+
+    /* The write methods of public classes are called with a MethodHandle,
+     * the others with Method.invoke
+     */
+    public static class PublicFailingLabel extends JLabel
+    {
+        public String getFailure()
+        {
+            return null;
+        }
+
+        public void setFailure(String failure)
+        {
+            failSetter(failure);
+        }
+    }
+
+    private static class PrivateFailingLabel extends JLabel
+    {
+        public String getFailure()
+        {
+            return null;
+        }
+
+        public void setFailure(String failure)
+        {
+            failSetter(failure);
+        }
+    }
+
+    private static void failSetter(String failure)
+    {
+        if ("error".equals(failure))
+        {
+            throw new SetterError();
+        }
+        throw new IllegalStateException(failure);
+    }
+
+    @Test
+    public void testInjectComponentSetterFailure()
+    {
+        ResourceMap rm = injectionResourceMap("Injection");
+        for (JLabel label : new JLabel[]{new PublicFailingLabel(), new PrivateFailingLabel()})
+        {
+            label.setName("failingLabel");
+            rm.putResource("failingLabel.failure", "exception");
+            try
+            {
+                rm.injectComponent(label);
+                fail("expected a PropertyInjectionException");
+            }
+            catch (ResourceMap.PropertyInjectionException e)
+            {
+                assertTrue(e.getCause() instanceof java.lang.reflect.InvocationTargetException);
+                assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+            }
+            rm.putResource("failingLabel.failure", "error");
+            try
+            {
+                rm.injectComponent(label);
+                fail("expected a SetterError");
+            }
+            catch (SetterError expected)
+            {
+            }
+        }
+    }
+
     @Test
     public void testInjectComponentHierarchyProperties()
     {
@@ -537,6 +795,134 @@ public class ResourceMapTest
         assertEquals(KeyEvent.VK_X, button.getMnemonic());
     }
 
+    @Test
+    public void testInjectComponentsInBackground() throws Exception
+    {
+        JPanel parentPanel = new JPanel();
+        JPanel childPanel = new JPanel();
+        JTextField textField1 = new JTextField();
+        JLabel mnemonicLabel2 = new JLabel();
+        JButton button = new JButton();
+        parentPanel.setName("parentPanel");
+        childPanel.setName("childPanel");
+        textField1.setName("textField1");
+        mnemonicLabel2.setName("mnemonicLabel2");
+        button.setName("button");
+        parentPanel.add(childPanel);
+        parentPanel.add(textField1);
+        childPanel.add(mnemonicLabel2);
+        childPanel.add(button);
+        injectionResourceMap("Injection").injectComponentsInBackground(parentPanel).get(10, TimeUnit.SECONDS);
+        assertEquals("parentPanel.getBackground()", new Color(0x55, 0x00, 0x00), parentPanel.getBackground());
+        assertEquals("childPanel.getForeground()", new Color(0x00, 0x00, 0x77), childPanel.getForeground());
+        assertEquals("textField1.getText()", "textField1", textField1.getText());
+        assertEquals("Save As", mnemonicLabel2.getText());
+        assertEquals(5, mnemonicLabel2.getDisplayedMnemonicIndex());
+        assertEquals("Exit", button.getText());
+        assertEquals(KeyEvent.VK_X, button.getMnemonic());
+
+        // properties after one that can't be set aren't set either
+        ResourceMap rm = injectionResourceMap("Injection");
+        rm.putResource("badLabel.text", Integer.valueOf(1));
+        JPanel panel = new JPanel();
+        JLabel badLabel = new JLabel("unchanged");
+        badLabel.setName("badLabel");
+        JTextField laterTextField = new JTextField();
+        laterTextField.setName("textField1");
+        panel.add(badLabel);
+        panel.add(laterTextField);
+        try
+        {
+            rm.injectComponentsInBackground(panel).get(10, TimeUnit.SECONDS);
+            fail("expected a LookupException");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof ResourceMap.LookupException);
+        }
+        assertEquals("unchanged", badLabel.getText());
+        assertEquals("", laterTextField.getText());
+    }
+
+    @Test
+    public void testInjectComponentsInBackgroundFailure() throws Exception
+    {
+        // PropertyInjectionExceptions, which format the component, are created on the EDT
+        final java.util.List<Boolean> formattedOnEDT = Collections.synchronizedList(new ArrayList<Boolean>());
+        JLabel label = new JLabel()
+        {
+            @Override
+            public String toString()
+            {
+                formattedOnEDT.add(SwingUtilities.isEventDispatchThread());
+                return "probeLabel";
+            }
+        };
+        label.setName("probeLabel");
+        ResourceMap rm = injectionResourceMap("Injection");
+        rm.putResource("probeLabel.width", Integer.valueOf(10));
+        try
+        {
+            rm.injectComponentsInBackground(label).get(10, TimeUnit.SECONDS);
+            fail("expected a PropertyInjectionException");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof ResourceMap.PropertyInjectionException);
+            ResourceMap.PropertyInjectionException pie = (ResourceMap.PropertyInjectionException) e.getCause();
+            assertEquals("probeLabel.width", pie.getKey());
+            assertEquals("width", pie.getPropertyName());
+            assertSame(label, pie.getComponent());
+        }
+        assertFalse(formattedOnEDT.isEmpty());
+        assertFalse(formattedOnEDT.contains(Boolean.FALSE));
+    }
+
+    @Test
+    public void testInjectComponentsPruning() throws Exception
+    {
+        JPanel parentPanel = new JPanel();
+        JPanel childPanel = new JPanel();
+        JTextField textField1 = new JTextField();
+        JPanel rendererParent = new JPanel();
+        CellRendererPane rendererPane = new CellRendererPane();
+        JTextField textField2 = new JTextField();
+        parentPanel.setName("parentPanel");
+        childPanel.setName("childPanel");
+        textField1.setName("textField1");
+        textField2.setName("textField2");
+        parentPanel.add(childPanel);
+        parentPanel.add(rendererParent);
+        rendererParent.add(rendererPane);
+        childPanel.add(textField1);
+        rendererPane.add(textField2);
+        childPanel.putClientProperty(ResourceMap.INJECT_CHILDREN_PROPERTY, Boolean.FALSE);
+
+        ResourceMap rm = injectionResourceMap("Injection");
+        rm.setInstrumentation(new ResourceMapInstrumentation());
+        rm.injectComponents(parentPanel);
+        assertEquals("childPanel.getForeground()", new Color(0x00, 0x00, 0x77), childPanel.getForeground());
+        assertEquals("textField1.getText()", "", textField1.getText());
+        // renderer panes are only pruned if their parent is marked, like any other subtree
+        assertEquals("textField2.getText()", "textField2", textField2.getText());
+        ResourceMapStatistics statistics = rm.getStatistics();
+        assertEquals(5, statistics.getComponentsVisited());
+        assertEquals(3, statistics.getComponentsInjected());
+
+        rm.injectComponentsInBackground(parentPanel).get(10, TimeUnit.SECONDS);
+        assertEquals("textField1.getText()", "", textField1.getText());
+        statistics = rm.getStatistics();
+        assertEquals(10, statistics.getComponentsVisited());
+        assertEquals(6, statistics.getComponentsInjected());
+
+        childPanel.putClientProperty(ResourceMap.INJECT_CHILDREN_PROPERTY, null);
+        rendererParent.putClientProperty(ResourceMap.INJECT_CHILDREN_PROPERTY, Boolean.FALSE);
+        textField2.setText("");
+        rm.injectComponents(parentPanel);
+        assertEquals("textField1.getText()", "textField1", textField1.getText());
+        assertEquals("textField2.getText()", "", textField2.getText());
+    }
+
     private static class TestResourceAnnotation
     {
         @Resource
@@ -600,6 +986,43 @@ public class ResourceMapTest
 
     }
 
+    @Test
+    public void testResourceAnnotationRepeatedInjection()
+    {
+        ResourceMap rm = basicResourceMap();
+        for (int i = 0; i < 2; i++)
+        {
+            TestResourceAnnotation target = new TestResourceAnnotation();
+            rm.injectFields(target);
+            assertEquals("@Resource private String stringField;", "stringField", target.stringField);
+            assertEquals("@Resource int[] numbers[11]", 11, target.numbers[11]);
+            checkBlack1x1Icon("@Resource icons[1]", target.icons[1]);
+        }
+    }
+
+    private static class TestResourceArrayBounds
+    {
+        @Resource
+        int[] values = new int[1];
+    }
+
+    @Test
+    public void testResourceAnnotationArrayBounds()
+    {
+        ResourceMap rm = basicResourceMap();
+        TestResourceArrayBounds target = new TestResourceArrayBounds();
+        try
+        {
+            rm.injectFields(target);
+            fail("rm.injectFields(TestResourceArrayBounds) expected throw");
+        }
+        catch (ResourceMap.InjectFieldException e)
+        {
+            assertEquals("TestResourceArrayBounds.values", e.getKey());
+            assertTrue(e.getCause() instanceof ArrayIndexOutOfBoundsException);
+        }
+    }
+
     private ResourceMap expressionEvaluationResourceMap()
     {
         String bundleBaseName = getClass().getPackage().getName() + ".resources.ExprEval";
@@ -639,6 +1062,39 @@ public class ResourceMapTest
         assertTrue("containsKey(\"justNull\")", rm.containsKey("justNull"));
     }
 
+    @Test
+    public void testCircularExpression()
+    {
+        ResourceMap rm = expressionEvaluationResourceMap();
+        for (String key : new String[] { "cycleA", "cycleB", "selfReference" })
+        {
+            try
+            {
+                rm.getString(key);
+                fail("rm.getString(\"" + key + "\") expected throw");
+            }
+            catch (ResourceMap.LookupException e) { }
+        }
+    }
+
+    @Test
+    public void testExpressionDependencies()
+    {
+        ResourceMap parent = expressionEvaluationResourceMap();
+        String childBundleName = getClass().getPackage().getName() + ".resources.Basic";
+        ResourceMap child = new ResourceMap(parent, getClass().getClassLoader(), childBundleName);
+        assertEquals("Hello World", child.getString("helloworld3"));
+        parent.putResource("world", "Earth");
+        assertEquals("Earth", parent.getString("place"));
+        assertEquals("Hello Earth", parent.getString("helloworld3"));
+        assertEquals("Hello Earth", child.getString("helloworld3"));
+        child.putResource("world", "Mars");
+        assertEquals("Hello Mars", child.getString("helloworld3"));
+        assertEquals("Hello Earth", parent.getString("helloworld3"));
+        parent.putResource("place", "${hello}");
+        assertEquals("Hello Hello", child.getString("helloworld3"));
+    }
+
     @Test
     public void testResourceMapSubclass()
     {
@@ -703,6 +1159,150 @@ public class ResourceMapTest
         assertEquals("platformSpecific", rm.getString("platformSpecific"));
     }
 
+    @Test
+    public void testConvertToMultipleTypes()
+    {
+        ResourceMap rm = basicResourceMap();
+        Integer integer123 = rm.getInteger("integer123");
+        assertEquals(Integer.valueOf(123), integer123);
+        assertEquals("123", rm.getString("integer123"));
+        assertEquals(Long.valueOf(123L), rm.getLong("integer123"));
+        assertSame(integer123, rm.getInteger("integer123"));
+        assertEquals(Integer.valueOf(123), rm.getObject("integer123", Number.class));
+        rm.putResource("integer123", "456");
+        assertEquals(Integer.valueOf(456), rm.getInteger("integer123"));
+        assertEquals("456", rm.getString("integer123"));
+    }
+
+    @Test
+    public void testFormatStrings()
+    {
+        ResourceMap rm = basicResourceMap();
+        String[] keys = { "aHelloMessage", "formatMixed", "formatReordered" };
+        Object[] args = { 42, "files", 3.14159 };
+        for (String key : keys)
+        {
+            String expected = String.format(rm.getString(key), args);
+            assertEquals(key, expected, rm.getString(key, args));
+            assertEquals(key, expected, rm.getString(key, args));
+            StringBuilder sb = new StringBuilder("> ");
+            assertTrue(rm.appendString(sb, key, args));
+            assertEquals(key, "> " + expected, sb.toString());
+        }
+        assertFalse(rm.appendString(new StringBuilder(), "noSuchResource", "World"));
+        assertNull(rm.getString("noSuchResource", "World"));
+        try
+        {
+            rm.getString("formatReordered", "World");
+            fail("rm.getString(\"formatReordered\", \"World\") expected throw");
+        }
+        catch (MissingFormatArgumentException e) { }
+        try
+        {
+            rm.getString("formatBad", "World");
+            fail("rm.getString(\"formatBad\", \"World\") expected throw");
+        }
+        catch (UnknownFormatConversionException e) { }
+        assertEquals("Copied some of 12 files", rm.formatMessage("formatMessage", "some", 12));
+    }
+
+    @Test
+    public void testAppendStringFailure()
+    {
+        ResourceMap rm = basicResourceMap();
+        StringBuilder sb = new StringBuilder("> ");
+        try
+        {
+            rm.appendString(sb, "formatMixed", 42, "files", "not a number");
+            fail("rm.appendString(sb, \"formatMixed\", ...) expected throw");
+        }
+        catch (IllegalFormatConversionException e) { }
+        assertEquals("> ", sb.toString());
+    }
+
+    @Test
+    public void testFormatMessageCache()
+    {
+        ResourceMap rm = basicResourceMap();
+        MessageFormat shared = (MessageFormat) rm.getObject("formatMessage", MessageFormat.class);
+        shared.applyPattern("modified {0}");
+        Locale defaultFormatLocale = Locale.getDefault(Locale.Category.FORMAT);
+        try
+        {
+            Locale.setDefault(Locale.Category.FORMAT, Locale.US);
+            assertEquals("Copied some of 1,234 files", rm.formatMessage("formatMessage", "some", 1234));
+            Locale.setDefault(Locale.Category.FORMAT, Locale.GERMANY);
+            assertEquals("Copied some of 1.234 files", rm.formatMessage("formatMessage", "some", 1234));
+        }
+        finally
+        {
+            Locale.setDefault(Locale.Category.FORMAT, defaultFormatLocale);
+        }
+    }
+
+    /* Declares overloads of the resource storage methods, but doesn't override them
+     */
+    private static class OverloadingResourceMap extends ResourceMap
+    {
+        OverloadingResourceMap(ClassLoader classLoader, String bundleName)
+        {
+            super(null, classLoader, bundleName);
+        }
+
+        public URL getResource()
+        {
+            return null;
+        }
+
+        public void putResource(String key)
+        {
+        }
+
+        protected boolean containsResourceKey(Object key)
+        {
+            return false;
+        }
+    }
+
+    @Test
+    public void testResourceStorageOverloads()
+    {
+        ClassLoader classLoader = getClass().getClassLoader();
+        ResourceMap rm = new OverloadingResourceMap(classLoader, "org.jdesktop.application.resources.Basic");
+        Integer integer123 = rm.getInteger("integer123");
+        assertEquals(Integer.valueOf(123), integer123);
+        assertEquals("123", rm.getString("integer123"));
+        assertSame(integer123, rm.getInteger("integer123"));
+    }
+
+    @Test
+    public void testPutResourceNewKey()
+    {
+        ResourceMap parent = basicResourceMap();
+        ResourceMap child = new ResourceMap(parent, getClass().getClassLoader(), parent.getBundleNames());
+        assertNull(child.getString("newKey"));
+        assertFalse(child.containsKey("newKey"));
+        parent.putResource("newKey", "parent value");
+        assertEquals("parent value", child.getString("newKey"));
+        child.putResource("newKey", "child value");
+        assertEquals("child value", child.getString("newKey"));
+        assertEquals("parent value", parent.getString("newKey"));
+    }
+
+    @Test
+    public void testPlatformChange()
+    {
+        String bundleBaseName = getClass().getPackage().getName() + ".resources.SimpleApplication";
+        ClassLoader classLoader = getClass().getClassLoader();
+        ResourceMap parent = new ResourceMap(null, classLoader, bundleBaseName);
+        ResourceMap child = new ResourceMap(parent, classLoader, bundleBaseName);
+        assertEquals("Default", parent.getString("currentPlatform"));
+        assertEquals("Default", child.getString("currentPlatform"));
+        parent.setPlatform(PlatformType.LINUX);
+        assertEquals("Linux", parent.getString("currentPlatform"));
+        assertEquals("Linux", child.getString("currentPlatform"));
+    }
+
     @Test
     public void testLocaleResource()
     {